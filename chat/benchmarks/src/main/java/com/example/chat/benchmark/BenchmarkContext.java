@@ -0,0 +1,23 @@
+package com.example.chat.benchmark;
+
+/**
+ * Overrides for starting the full application inside a JMH fork.
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    static String[] properties() {
+        return new String[] {
+                "server.port=0",
+                "spring.jpa.show-sql=false",
+                "spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                "spring.h2.console.enabled=false",
+                "logging.level.root=WARN",
+                "logging.level.com.example.chat=WARN",
+                "logging.level.org.springframework.security=WARN",
+                "jwt.revocation.snapshot-path=target/revoked-tokens.bin"
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.model.ChatMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON encoding of a single {@link ChatMessage}, using the same Jackson setup
+ * as the STOMP message converter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatMessageSerializationBenchmark {
+
+    @Param({"16", "256", "4096", "65536"})
+    private int payloadSize;
+
+    private ObjectMapper objectMapper;
+    private ChatMessage message;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        message = new ChatMessage();
+        message.setId(1234L);
+        message.setSender("alice");
+        message.setReceiver("bob");
+        message.setColor("#007bff");
+        message.setContent(Payloads.text(payloadSize));
+        message.setTimestamp(LocalDateTime.now());
+        message.setMessageType(ChatMessage.MessageType.PRIVATE_MESSAGE);
+
+        encoded = objectMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public ChatMessage deserialize() throws Exception {
+        return objectMapper.readValue(encoded, ChatMessage.class);
+    }
+}
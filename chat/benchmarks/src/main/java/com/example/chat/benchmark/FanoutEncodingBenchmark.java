@@ -0,0 +1,98 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.model.ChatMessage;
+import com.example.chat.websocket.MessageFanout;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sending one {@link ChatMessage} to several destinations: {@code convertAndSend}
+ * per destination (the old private-message path) against {@link MessageFanout},
+ * which encodes once. Run with {@code -prof gc} to compare allocations per
+ * delivered message; divide the per-op figures by {@code destinations}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FanoutEncodingBenchmark {
+
+    @Param({"256", "4096"})
+    private int payloadSize;
+
+    @Param({"2", "32"})
+    private int destinations;
+
+    private SimpMessagingTemplate template;
+    private MessageFanout fanout;
+    private ChatMessage message;
+    private String[] targets;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        MappingJackson2MessageConverter jackson = new MappingJackson2MessageConverter();
+        jackson.setObjectMapper(objectMapper);
+
+        // Same converter chain as the broker's, with a channel that only consumes the message
+        template = new SimpMessagingTemplate((msg, timeout) -> {
+            blackhole.consume(msg);
+            return true;
+        });
+        template.setMessageConverter(new CompositeMessageConverter(
+                List.of(new StringMessageConverter(), new ByteArrayMessageConverter(), jackson)));
+        fanout = new MessageFanout(template);
+
+        message = new ChatMessage();
+        message.setId(1234L);
+        message.setSender("alice");
+        message.setReceiver("bob");
+        message.setColor("#007bff");
+        message.setContent(Payloads.text(payloadSize));
+        message.setTimestamp(LocalDateTime.now());
+        message.setMessageType(ChatMessage.MessageType.PRIVATE_MESSAGE);
+
+        targets = new String[destinations];
+        for (int i = 0; i < destinations; i++) {
+            targets[i] = "/user/user" + i + "/queue/private";
+        }
+    }
+
+    @Benchmark
+    public void convertAndSendEach() {
+        for (String target : targets) {
+            template.convertAndSend(target, message);
+        }
+    }
+
+    @Benchmark
+    public void encodeOnce() {
+        fanout.send(message, targets);
+    }
+}
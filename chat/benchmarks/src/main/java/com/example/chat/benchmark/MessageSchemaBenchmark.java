@@ -0,0 +1,165 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.model.ChatMessage;
+import com.example.chat.model.ColorConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The old string-column message table against the normalized one, in a file
+ * based H2 so the on-disk size can be compared. Both hold {@code rows}
+ * private messages spread over 10,000 conversations between 1,000 users; the
+ * benchmark loads one conversation the way the history endpoint does. Table
+ * sizes (rows plus indexes) are printed after seeding.
+ *
+ * <p>The legacy table gets an index on (sender, receiver) so the query
+ * comparison is against the obvious fix rather than a full scan. The
+ * normalized table has the same foreign keys to {@code users} as the real
+ * schema, and with them the indexes H2 creates for foreign key columns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageSchemaBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final int CONVERSATIONS = 10_000;
+    private static final ColorConverter COLOR = new ColorConverter();
+
+    @Param({"1000000"})
+    private int rows;
+
+    @Param({"legacy", "normalized"})
+    private String schema;
+
+    private Path directory;
+    private Connection connection;
+    private PreparedStatement history;
+    private String[] usernames;
+    private long user1;
+    private long user2;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory(Paths.get("target"), "schema-" + schema);
+        connection = DriverManager.getConnection("jdbc:h2:file:" + directory.toAbsolutePath().resolve("db"), "sa", "");
+
+        usernames = new String[USERS + 1];
+        for (int i = 1; i <= USERS; i++) {
+            usernames[i] = "user" + i;
+        }
+        // Conversation 0 is the one under test
+        user1 = 1;
+        user2 = 2;
+
+        try (Statement statement = connection.createStatement()) {
+            // pair p: users (p % 1000 + 1) and ((p % 1000 + p / 1000 + 1) % 1000 + 1), direction alternating
+            String pair = "MOD(X, " + CONVERSATIONS + ")";
+            String a = "(MOD(" + pair + ", " + USERS + ") + 1)";
+            String b = "(MOD(MOD(" + pair + ", " + USERS + ") + " + pair + " / " + USERS + " + 1, " + USERS + ") + 1)";
+            String from = "CASE WHEN MOD(X, 2) = 0 THEN " + a + " ELSE " + b + " END";
+            String to = "CASE WHEN MOD(X, 2) = 0 THEN " + b + " ELSE " + a + " END";
+            String content = "'" + Payloads.text(80).replace("'", "''") + "'";
+            String timestamp = "DATEADD('SECOND', X, TIMESTAMP '2024-01-01 00:00:00')";
+
+            if (schema.equals("legacy")) {
+                statement.execute("CREATE TABLE chat_messages (id BIGINT AUTO_INCREMENT PRIMARY KEY, content VARCHAR(255),"
+                        + " sender VARCHAR(255), receiver VARCHAR(255), color VARCHAR(255),"
+                        + " timestamp TIMESTAMP NOT NULL, message_type VARCHAR(255))");
+                statement.execute("INSERT INTO chat_messages (content, sender, receiver, color, timestamp, message_type)"
+                        + " SELECT " + content + ", 'user' || " + from + ", 'user' || " + to + ", '#007bff', "
+                        + timestamp + ", 'PRIVATE_MESSAGE' FROM SYSTEM_RANGE(0, " + (rows - 1) + ")");
+                statement.execute("CREATE INDEX idx_legacy_pair ON chat_messages (sender, receiver)");
+                history = connection.prepareStatement("SELECT id, content, sender, receiver, color, timestamp, message_type"
+                        + " FROM chat_messages WHERE message_type = 'PRIVATE_MESSAGE'"
+                        + " AND ((sender = ? AND receiver = ?) OR (sender = ? AND receiver = ?)) ORDER BY timestamp");
+                history.setString(1, usernames[(int) user1]);
+                history.setString(2, usernames[(int) user2]);
+                history.setString(3, usernames[(int) user2]);
+                history.setString(4, usernames[(int) user1]);
+            } else {
+                statement.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, username VARCHAR(255) NOT NULL UNIQUE)");
+                statement.execute("INSERT INTO users SELECT X, 'user' || X FROM SYSTEM_RANGE(1, " + USERS + ")");
+                statement.execute("CREATE TABLE chat_messages (id BIGINT AUTO_INCREMENT PRIMARY KEY, content VARCHAR(255),"
+                        + " sender_id BIGINT, receiver_id BIGINT, conversation_key BIGINT, color INTEGER,"
+                        + " timestamp TIMESTAMP NOT NULL, message_type VARCHAR(255),"
+                        + " CONSTRAINT fk_chat_messages_sender FOREIGN KEY (sender_id) REFERENCES users (id),"
+                        + " CONSTRAINT fk_chat_messages_receiver FOREIGN KEY (receiver_id) REFERENCES users (id))");
+                statement.execute("INSERT INTO chat_messages (content, sender_id, receiver_id, conversation_key, color,"
+                        + " timestamp, message_type)"
+                        + " SELECT " + content + ", " + from + ", " + to + ", "
+                        + "(LEAST(" + a + ", " + b + ") * 4294967296 + GREATEST(" + a + ", " + b + ")), " + 0x007bff + ", "
+                        + timestamp + ", 'PRIVATE_MESSAGE' FROM SYSTEM_RANGE(0, " + (rows - 1) + ")");
+                statement.execute("CREATE INDEX idx_chat_messages_conversation ON chat_messages (conversation_key, timestamp)");
+                history = connection.prepareStatement("SELECT id, content, sender_id, receiver_id, color, timestamp, message_type"
+                        + " FROM chat_messages WHERE conversation_key = ? ORDER BY timestamp");
+                history.setLong(1, ChatMessage.conversationKey(user1, user2));
+            }
+
+            statement.execute("CHECKPOINT SYNC");
+            try (ResultSet rs = statement.executeQuery("SELECT DISK_SPACE_USED('CHAT_MESSAGES')")) {
+                rs.next();
+                System.out.printf("%n%s schema, %,d rows: table and indexes use %,d bytes (%.1f bytes/row)%n",
+                        schema, rows, rs.getLong(1), (double) rs.getLong(1) / rows);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        connection.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public List<ChatMessage> history() throws Exception {
+        List<ChatMessage> messages = new ArrayList<>();
+        try (ResultSet rs = history.executeQuery()) {
+            boolean legacy = schema.equals("legacy");
+            while (rs.next()) {
+                ChatMessage message = new ChatMessage();
+                message.setId(rs.getLong(1));
+                message.setContent(rs.getString(2));
+                if (legacy) {
+                    message.setSender(rs.getString(3));
+                    message.setReceiver(rs.getString(4));
+                    message.setColor(rs.getString(5));
+                } else {
+                    // stands in for the UserDirectory lookup
+                    message.setSender(usernames[(int) rs.getLong(3)]);
+                    message.setReceiver(usernames[(int) rs.getLong(4)]);
+                    message.setColor(COLOR.convertToEntityAttribute(rs.getInt(5)));
+                }
+                message.setTimestamp(rs.getTimestamp(6).toLocalDateTime());
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+}
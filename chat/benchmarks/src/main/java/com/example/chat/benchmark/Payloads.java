@@ -0,0 +1,22 @@
+package com.example.chat.benchmark;
+
+final class Payloads {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz ABCDEFGHIJKLMNOPQRSTUVWXYZ 0123456789.,\n";
+
+    private Payloads() {
+    }
+
+    // deterministic chat-like text so runs are comparable
+    static String text(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < length; i++) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            sb.append(ALPHABET.charAt((int) Math.floorMod(seed, (long) ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.ChatApplication;
+import com.example.chat.model.ChatMessage;
+import com.example.chat.model.User;
+import com.example.chat.repo.ChatMessageRepo;
+import com.example.chat.repo.UserRepo;
+import com.example.chat.service.UserDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Private history lookup as {@code MessageController} does it (conversation
+ * query plus username resolution) against the real JPA stack and H2, with
+ * {@code historyDepth} messages in the conversation under test and
+ * {@code noiseConversations} other conversations of the same size around it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrivateHistoryBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int historyDepth;
+
+    @Param({"10"})
+    private int noiseConversations;
+
+    private ConfigurableApplicationContext context;
+    private ChatMessageRepo chatMessageRepo;
+    private UserRepo userRepo;
+    private UserDirectory userDirectory;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(ChatApplication.class)
+                .properties(BenchmarkContext.properties())
+                .run();
+        chatMessageRepo = context.getBean(ChatMessageRepo.class);
+        userRepo = context.getBean(UserRepo.class);
+        userDirectory = context.getBean(UserDirectory.class);
+
+        seedConversation("alice", "bob");
+        for (int i = 0; i < noiseConversations; i++) {
+            seedConversation("user" + i, "user" + (i + 1));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<ChatMessage> findPrivateConversation() {
+        long conversationKey = ChatMessage.conversationKey(userDirectory.idOf("alice"), userDirectory.idOf("bob"));
+        return userDirectory.resolveNames(chatMessageRepo.findPrivateConversation(conversationKey));
+    }
+
+    private void seedConversation(String user1, String user2) {
+        createUser(user1);
+        createUser(user2);
+        LocalDateTime start = LocalDateTime.now().minusDays(1);
+        List<ChatMessage> batch = new ArrayList<>(historyDepth);
+        for (int i = 0; i < historyDepth; i++) {
+            ChatMessage message = new ChatMessage();
+            message.setSender(i % 2 == 0 ? user1 : user2);
+            message.setReceiver(i % 2 == 0 ? user2 : user1);
+            message.setContent(Payloads.text(80));
+            message.setTimestamp(start.plusSeconds(i));
+            message.setMessageType(ChatMessage.MessageType.PRIVATE_MESSAGE);
+            userDirectory.assignIds(message);
+            batch.add(message);
+        }
+        chatMessageRepo.saveAll(batch);
+    }
+
+    private void createUser(String username) {
+        if (userRepo.existsByUsername(username)) {
+            return;
+        }
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("{noop}password");
+        user.setEmail(username + "@example.com");
+        userRepo.save(user);
+    }
+}
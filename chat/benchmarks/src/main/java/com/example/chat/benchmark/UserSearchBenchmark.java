@@ -0,0 +1,55 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.dto.UserSearchResultDTO;
+import com.example.chat.service.UserSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prefix search over {@code users} usernames, one in {@code onlineEvery}
+ * online. Short prefixes match the most names and are the worst case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class UserSearchBenchmark {
+
+    @Param({"1000000"})
+    private int users;
+
+    @Param({"10"})
+    private int onlineEvery;
+
+    @Param({"u", "user12", "user12345"})
+    private String prefix;
+
+    private UserSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        index = new UserSearchIndex(null, null);
+        for (int i = 0; i < users; i++) {
+            index.add("user" + i, i % onlineEvery == 0);
+        }
+    }
+
+    @Benchmark
+    public List<UserSearchResultDTO> search() {
+        return index.search(prefix, 20);
+    }
+}
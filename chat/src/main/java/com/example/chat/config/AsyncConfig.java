@@ -0,0 +1,35 @@
+package com.example.chat.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    // Online-status writes are fire-and-forget; keep them off the request threads.
+    // Not a default candidate, so Boot still creates the shared applicationTaskExecutor.
+    @Bean(name = "presenceExecutor", defaultCandidate = false)
+    public ThreadPoolTaskExecutor presenceExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(10_000);
+        executor.setThreadNamePrefix("presence-");
+        executor.initialize();
+        return executor;
+    }
+
+    // Hands due scheduled messages from the timing wheel thread to the delivery path
+    @Bean(name = "schedulerDeliveryExecutor", defaultCandidate = false)
+    public ThreadPoolTaskExecutor schedulerDeliveryExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("scheduled-delivery-");
+        executor.initialize();
+        return executor;
+    }
+}
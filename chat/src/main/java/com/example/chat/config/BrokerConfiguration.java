@@ -0,0 +1,34 @@
+package com.example.chat.config;
+
+import com.example.chat.websocket.TrackingSubProtocolWebSocketHandler;
+import com.example.chat.websocket.WebSocketSessionRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
+
+/**
+ * Replaces {@code @EnableWebSocketMessageBroker} so the sub-protocol handler can
+ * report its per-session send buffers. Broker settings still live in
+ * {@link WebSocketConfig}.
+ */
+@Configuration
+public class BrokerConfiguration extends DelegatingWebSocketMessageBrokerConfiguration {
+
+    @Autowired
+    private WebSocketSessionRegistry sessionRegistry;
+
+    @Bean
+    @Override
+    public WebSocketHandler subProtocolWebSocketHandler(
+            @Qualifier("clientInboundChannel") AbstractSubscribableChannel clientInboundChannel,
+            @Qualifier("clientOutboundChannel") AbstractSubscribableChannel clientOutboundChannel) {
+        TrackingSubProtocolWebSocketHandler handler =
+                new TrackingSubProtocolWebSocketHandler(clientInboundChannel, clientOutboundChannel, sessionRegistry);
+        handler.setPhase(getPhase());
+        return handler;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.chat.config;
+
+import com.example.chat.presence.LoopbackPresenceTransport;
+import com.example.chat.presence.PresenceTransport;
+import com.example.chat.presence.UdpPresenceTransport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class PresenceConfig {
+
+    // "loopback" keeps presence on this node; "udp" exchanges it with chat.presence.udp.peers
+    @Bean
+    public PresenceTransport presenceTransport(@Value("${chat.presence.transport:loopback}") String transport,
+                                               @Value("${chat.presence.udp.port:7946}") int port,
+                                               @Value("${chat.presence.udp.peers:}") List<String> peers)
+            throws IOException {
+        if ("udp".equalsIgnoreCase(transport)) {
+            List<InetSocketAddress> peerAddresses = new ArrayList<>();
+            for (String peer : peers) {
+                if (!StringUtils.hasText(peer)) {
+                    continue;
+                }
+                int separator = peer.lastIndexOf(':');
+                peerAddresses.add(new InetSocketAddress(peer.substring(0, separator).trim(),
+                        Integer.parseInt(peer.substring(separator + 1).trim())));
+            }
+            return new UdpPresenceTransport(new InetSocketAddress(port), peerAddresses);
+        }
+        return new LoopbackPresenceTransport.Hub().join();
+    }
+}
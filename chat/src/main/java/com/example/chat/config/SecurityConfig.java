@@ -48,6 +48,7 @@ public class SecurityConfig {
                   .requestMatchers("/auth/**").permitAll() // Allow all auth endpoints
                   .requestMatchers("/h2-console/**").permitAll()
                   .requestMatchers("/ws/**").permitAll()
+                  .requestMatchers("/actuator/health/**", "/actuator/info").permitAll() // Probes; other endpoints need a token
                   .requestMatchers("/error").permitAll() // Allow error pages
                   .requestMatchers("/health").permitAll() // Allow health check
                   .requestMatchers("/test").permitAll() // Allow test endpoint
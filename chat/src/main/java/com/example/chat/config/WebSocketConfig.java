@@ -1,18 +1,131 @@
 package com.example.chat.config;
 
+import com.example.chat.metrics.ChatMetrics;
+import com.example.chat.overload.InboundDelayInterceptor;
+import com.example.chat.overload.OverloadHandshakeInterceptor;
+import com.example.chat.websocket.OutboundCoalescer;
+import com.example.chat.websocket.StompPrincipalInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.StringUtils;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
-@EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketConfig.class);
+
+    private static final String DESTINATION_TYPE_HEADER = "destination-type";
+
+    private final ChatMetrics chatMetrics;
+    private final StompPrincipalInterceptor stompPrincipalInterceptor;
+    private final TaskScheduler messageBrokerTaskScheduler;
+    private final OutboundCoalescer outboundCoalescer;
+    private final InboundDelayInterceptor inboundDelayInterceptor;
+    private final OverloadHandshakeInterceptor overloadHandshakeInterceptor;
+
+    // "simple" keeps the in-memory broker; "relay" forwards to an external STOMP broker shared by all nodes
+    @Value("${chat.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${chat.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${chat.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${chat.broker.relay.client-login:guest}")
+    private String relayClientLogin;
+
+    @Value("${chat.broker.relay.client-passcode:guest}")
+    private String relayClientPasscode;
+
+    @Value("${chat.broker.relay.system-login:guest}")
+    private String relaySystemLogin;
+
+    @Value("${chat.broker.relay.system-passcode:guest}")
+    private String relaySystemPasscode;
+
+    @Value("${chat.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
+
+    // How often the server sends heartbeats and expects them from clients; 0 disables either direction
+    @Value("${chat.websocket.heartbeat.server-ms:10000}")
+    private long serverHeartbeatMillis;
+
+    @Value("${chat.websocket.heartbeat.client-ms:10000}")
+    private long clientHeartbeatMillis;
+
+    // Largest inbound STOMP message; has to fit a full /app/chat.sendBatch array
+    @Value("${chat.websocket.max-message-bytes:524288}")
+    private int maxMessageBytes;
+
+    // The scheduler Spring's broker configuration already creates; lazy because it is defined after this config
+    public WebSocketConfig(ChatMetrics chatMetrics, StompPrincipalInterceptor stompPrincipalInterceptor,
+                           @Lazy TaskScheduler messageBrokerTaskScheduler, OutboundCoalescer outboundCoalescer,
+                           InboundDelayInterceptor inboundDelayInterceptor,
+                           OverloadHandshakeInterceptor overloadHandshakeInterceptor) {
+        this.chatMetrics = chatMetrics;
+        this.stompPrincipalInterceptor = stompPrincipalInterceptor;
+        this.messageBrokerTaskScheduler = messageBrokerTaskScheduler;
+        this.outboundCoalescer = outboundCoalescer;
+        this.inboundDelayInterceptor = inboundDelayInterceptor;
+        this.overloadHandshakeInterceptor = overloadHandshakeInterceptor;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config){
-        config.enableSimpleBroker("/topic", "/queue", "/user");
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            logger.info("Using STOMP broker relay at {}:{}", relayHost, relayPort);
+            var relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayClientLogin)
+                    .setClientPasscode(relayClientPasscode)
+                    .setSystemLogin(relaySystemLogin)
+                    .setSystemPasscode(relaySystemPasscode)
+                    // user destinations this node cannot resolve are rebroadcast for the other nodes
+                    .setUserDestinationBroadcast("/topic/unresolved-user")
+                    .setUserRegistryBroadcast("/topic/user-registry");
+            if (StringUtils.hasText(relayVirtualHost)) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+            config.configureBrokerChannel().interceptors(new ChannelInterceptor() {
+                // Artemis/ActiveMQ stamp destination-type on MESSAGE frames and the user destination broadcast
+                // copies it onto the re-sent /queue message, which would then be routed as a topic and dropped
+                @Override
+                public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+                    if (accessor.getFirstNativeHeader(DESTINATION_TYPE_HEADER) == null) {
+                        return message;
+                    }
+                    accessor.removeNativeHeader(DESTINATION_TYPE_HEADER);
+                    return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+                }
+            });
+        } else {
+            // Heartbeats let the broker drop sessions whose client stopped talking without closing
+            config.enableSimpleBroker("/topic", "/queue", "/user")
+                    .setHeartbeatValue(new long[]{serverHeartbeatMillis, clientHeartbeatMillis})
+                    .setTaskScheduler(messageBrokerTaskScheduler);
+        }
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
     }
@@ -21,6 +134,44 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
               .setAllowedOriginPatterns("*") // allow for all origins
+              .addInterceptors(overloadHandshakeInterceptor) // 503 with Retry-After while shedding connections
               .withSockJS(); // Enable SockJS fallback options if needed
     }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setMessageSizeLimit(maxMessageBytes);
+    }
+
+    // Tomcat otherwise closes the connection on any text message over 8 KB, before STOMP sees it
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> webSocketBufferCustomizer() {
+        return factory -> factory.addContextCustomizers(context -> {
+            context.addParameter("org.apache.tomcat.websocket.textBufferSize", String.valueOf(maxMessageBytes));
+            context.addParameter("org.apache.tomcat.websocket.binaryBufferSize", String.valueOf(maxMessageBytes));
+        });
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Stamped first, so the measured delay also covers the other interceptors
+        registration.interceptors(inboundDelayInterceptor, stompPrincipalInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // every MESSAGE frame on the outbound channel is one delivery to one session
+        registration.interceptors(new ChannelInterceptor() {
+            @Override
+            public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+                if (sent && SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+                    chatMetrics.messageFannedOut(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+                }
+            }
+        });
+        // After the counter, so a held-back message is not counted until its frame goes out
+        if (outboundCoalescer.isEnabled()) {
+            registration.interceptors(outboundCoalescer);
+        }
+    }
 }
@@ -0,0 +1,221 @@
+package com.example.chat.controller;
+
+import com.example.chat.dto.AttachmentDTO;
+import com.example.chat.dto.UploadStatusDTO;
+import com.example.chat.model.Attachment;
+import com.example.chat.model.User;
+import com.example.chat.service.AttachmentService;
+import com.example.chat.service.UploadOffsetException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * File sharing for chat messages. A client starts an upload, PUTs the bytes
+ * in one or more chunks (resuming from {@code offset} after a failure), and
+ * then sends a chat message carrying the returned attachment id. Uploads are
+ * only visible to their uploader, attachments to whoever
+ * {@link AttachmentService#canRead can read} them; to anyone else both look
+ * like they do not exist.
+ */
+@RestController
+@RequestMapping("/api/attachments")
+public class AttachmentController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentController.class);
+
+    static final String UPLOAD_OFFSET = "Upload-Offset";
+
+    // Tomcat writes the file with sendfile when these request attributes are set
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final AttachmentService attachmentService;
+
+    public AttachmentController(AttachmentService attachmentService) {
+        this.attachmentService = attachmentService;
+    }
+
+    @PostMapping("/uploads")
+    public ResponseEntity<UploadStatusDTO> startUpload(@AuthenticationPrincipal User caller,
+                                                       @RequestParam String fileName,
+                                                       @RequestParam(required = false) String contentType,
+                                                       @RequestParam long size) {
+        String user = caller.getUsername();
+        try {
+            AttachmentService.Upload upload = attachmentService.startUpload(user, fileName, contentType, size);
+            return ResponseEntity.status(HttpStatus.CREATED).body(status(upload, 0, null));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected upload of {} for {}: {}", fileName, user, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<UploadStatusDTO> getUpload(@AuthenticationPrincipal User caller,
+                                                     @PathVariable String uploadId) {
+        return findUpload(uploadId, caller)
+                .map(upload -> ResponseEntity.ok(status(upload, attachmentService.getOffset(upload), null)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @PutMapping(value = "/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadStatusDTO> uploadChunk(@AuthenticationPrincipal User caller,
+                                                       @PathVariable String uploadId, @RequestParam long offset,
+                                                       InputStream body) throws IOException {
+        Optional<AttachmentService.Upload> found = findUpload(uploadId, caller);
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        AttachmentService.Upload upload = found.get();
+        try {
+            Optional<Attachment> attachment = attachmentService.appendChunk(upload, offset, body);
+            if (attachment.isPresent()) {
+                return ResponseEntity.status(HttpStatus.CREATED)
+                        .body(status(upload, upload.getSize(), toDTO(attachment.get())));
+            }
+            long received = attachmentService.getOffset(upload);
+            return ResponseEntity.ok()
+                    .header(UPLOAD_OFFSET, String.valueOf(received))
+                    .body(status(upload, received, null));
+        } catch (UploadOffsetException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(UPLOAD_OFFSET, String.valueOf(e.getExpectedOffset()))
+                    .body(status(upload, e.getExpectedOffset(), null));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            logger.warn("Rejected chunk for upload {}: {}", uploadId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{id}/meta")
+    public ResponseEntity<AttachmentDTO> getAttachment(@AuthenticationPrincipal User caller, @PathVariable Long id) {
+        return findAttachment(id, caller)
+                .map(attachment -> ResponseEntity.ok(toDTO(attachment)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{id}")
+    public void download(@AuthenticationPrincipal User caller, @PathVariable Long id,
+                         @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<Attachment> found = findAttachment(id, caller);
+        Path blob = found.map(attachment -> attachmentService.blobPath(attachment.getSha256())).orElse(null);
+        if (blob == null || !Files.exists(blob)) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        Attachment attachment = found.get();
+        long size = attachment.getSize();
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, "\"" + attachment.getSha256() + "\"");
+        // Blobs never change, so clients can keep them
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable");
+
+        long start = 0;
+        long end = size - 1;
+        if (range != null) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                // Multiple ranges are rare for files; answer those with the whole file
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(size);
+                    end = ranges.get(0).getRangeEnd(size);
+                    if (start >= size || start > end) {
+                        throw new IllegalArgumentException("Range " + range + " outside of " + size + " bytes");
+                    }
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return;
+            }
+        }
+
+        long length = end - start + 1;
+        response.setContentType(attachment.getContentType() != null
+                ? attachment.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(length);
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        ContentDisposition.Builder disposition = attachmentService.isSafeInline(attachment.getContentType())
+                ? ContentDisposition.inline() : ContentDisposition.attachment();
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                disposition.filename(attachment.getFileName(), StandardCharsets.UTF_8).build().toString());
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, blob.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(blob, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long n = channel.transferTo(position, remaining, out);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+                remaining -= n;
+            }
+        }
+    }
+
+    private Optional<AttachmentService.Upload> findUpload(String uploadId, User caller) {
+        return attachmentService.findUpload(uploadId)
+                .filter(upload -> upload.getUploaderId().equals(caller.getId()));
+    }
+
+    private Optional<Attachment> findAttachment(Long id, User caller) {
+        return attachmentService.findAttachment(id)
+                .filter(attachment -> attachmentService.canRead(attachment, caller.getId()));
+    }
+
+    private static UploadStatusDTO status(AttachmentService.Upload upload, long offset, AttachmentDTO attachment) {
+        return UploadStatusDTO.builder()
+                .uploadId(upload.getId())
+                .size(upload.getSize())
+                .offset(offset)
+                .attachment(attachment)
+                .build();
+    }
+
+    private static AttachmentDTO toDTO(Attachment attachment) {
+        return AttachmentDTO.builder()
+                .id(attachment.getId())
+                .sha256(attachment.getSha256())
+                .fileName(attachment.getFileName())
+                .contentType(attachment.getContentType())
+                .size(attachment.getSize())
+                .build();
+    }
+}
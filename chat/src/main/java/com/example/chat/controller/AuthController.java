@@ -7,10 +7,16 @@ import com.example.chat.dto.UserDTO;
 import com.example.chat.model.User;
 import com.example.chat.repo.UserRepo;
 import com.example.chat.service.AuthenticationService;
+import com.example.chat.service.LoginThrottledException;
+import com.example.chat.service.ReadYourWrites;
+import com.example.chat.service.ResourceVersions;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,9 +30,20 @@ public class AuthController {
 
     private final UserRepo userRepo;
 
-    public AuthController(AuthenticationService authenticationService, UserRepo userRepo) {
+    private final ResourceVersions resourceVersions;
+
+    private final ConditionalGet conditionalGet;
+
+    private final ReadYourWrites readYourWrites;
+
+    public AuthController(AuthenticationService authenticationService, UserRepo userRepo,
+                          ResourceVersions resourceVersions, ConditionalGet conditionalGet,
+                          ReadYourWrites readYourWrites) {
         this.authenticationService = authenticationService;
         this.userRepo = userRepo;
+        this.resourceVersions = resourceVersions;
+        this.conditionalGet = conditionalGet;
+        this.readYourWrites = readYourWrites;
     }
 
     @PostMapping("/signup")
@@ -67,6 +84,12 @@ public class AuthController {
                     .header("Access-Control-Allow-Methods", "POST, OPTIONS")
                     .header("Access-Control-Allow-Headers", "*")
                     .body(loginResponseDTO);
+        } catch (LoginThrottledException e) {
+            logger.warn("Login throttled for user {}: {}", loginRequestDTO.getUsername(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Access-Control-Allow-Origin", "*")
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .build();
         } catch (Exception e) {
             logger.error("Login failed for user {}: {}", loginRequestDTO.getUsername(), e.getMessage());
             throw e;
@@ -109,17 +132,21 @@ public class AuthController {
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<String> logout(Authentication authentication) {
+    public ResponseEntity<String> logout(Authentication authentication,
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authHeader) {
         if (authentication != null && authentication.isAuthenticated()) {
-            String username = authentication.getName();
-            authenticationService.logout(username);
+            // Same principal as in getCurrentUser, getName() would be the entity's toString()
+            String username = authentication.getPrincipal() instanceof User principal
+                    ? principal.getUsername() : authentication.getName();
+            String jwtToken = authHeader != null && authHeader.startsWith("Bearer ") ? authHeader.substring(7) : null;
+            authenticationService.logout(username, jwtToken);
             return ResponseEntity.ok("Logged out successfully");
         }
         return ResponseEntity.ok("Logged out successfully");
     }
 
     @GetMapping("/current-user")
-    public ResponseEntity<?> getCurrentUser(Authentication authentication) {
+    public ResponseEntity<?> getCurrentUser(Authentication authentication, ServletWebRequest request) {
         logger.info("Getting current user, authentication: {}", authentication);
 
         if (authentication == null) {
@@ -128,10 +155,17 @@ public class AuthController {
                     .body("User is not authenticated");
         }
 
-        String username = authentication.getName();
+        // The JWT filter authenticates with the User entity, whose toString() is not the name
+        String username = authentication.getPrincipal() instanceof User principal
+                ? principal.getUsername() : authentication.getName();
         logger.info("Username from authentication: {}", username);
 
-        User user = userRepo.findByUsername(username)
+        if (conditionalGet.notModified(request, "current-user", resourceVersions.userTag(username),
+                CacheControl.noCache().cachePrivate())) {
+            return null;
+        }
+
+        User user = readYourWrites.read(ReadYourWrites.userKey(username), () -> userRepo.findByUsername(username))
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         logger.info("Found user: {}", user.getUsername());
@@ -139,8 +173,12 @@ public class AuthController {
     }
 
     @GetMapping("/online-users")
-    public ResponseEntity<?> getOnlineUsers() {
+    public ResponseEntity<?> getOnlineUsers(ServletWebRequest request) {
         logger.info("Getting online users");
+        if (conditionalGet.notModified(request, "online-users", resourceVersions.presenceTag(),
+                CacheControl.noCache())) {
+            return null;
+        }
         try {
             var result = authenticationService.getOnlineUsers();
             logger.info("Online users retrieved successfully: {}", result);
@@ -1,42 +1,89 @@
 package com.example.chat.controller;
 
+import com.example.chat.metrics.ChatMetrics;
 import com.example.chat.model.ChatMessage;
+import com.example.chat.model.ScheduledMessage;
+import com.example.chat.overload.OverloadController;
+import com.example.chat.overload.OverloadMode;
+import com.example.chat.presence.PresenceRegistry;
 import com.example.chat.repo.ChatMessageRepo;
+import com.example.chat.scheduler.MessageScheduler;
+import com.example.chat.scheduler.ScheduledMessageDueEvent;
+import com.example.chat.service.AttachmentService;
+import com.example.chat.service.InboxService;
+import com.example.chat.service.ReadYourWrites;
+import com.example.chat.service.ResourceVersions;
+import com.example.chat.service.UserDirectory;
 import com.example.chat.service.UserService;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.example.chat.websocket.MessageFanout;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Controller
 public class ChatController {
 
+    private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
+
     private final UserService userService;
     private final ChatMessageRepo chatMessageRepo;
+    private final ChatMetrics chatMetrics;
 
-    @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private final MessageFanout messageFanout;
+    private final UserDirectory userDirectory;
+    private final AttachmentService attachmentService;
+    private final InboxService inboxService;
+    private final MessageScheduler messageScheduler;
+    private final PresenceRegistry presenceRegistry;
+    private final ReadYourWrites readYourWrites;
+    private final ResourceVersions resourceVersions;
+    private final OverloadController overloadController;
+    private final int maxBatchMessages;
 
-    public ChatController(UserService userService, ChatMessageRepo chatMessageRepo) {
+    public ChatController(UserService userService, ChatMessageRepo chatMessageRepo, ChatMetrics chatMetrics,
+                          MessageFanout messageFanout, UserDirectory userDirectory,
+                          AttachmentService attachmentService, InboxService inboxService,
+                          MessageScheduler messageScheduler, PresenceRegistry presenceRegistry,
+                          ReadYourWrites readYourWrites, ResourceVersions resourceVersions,
+                          OverloadController overloadController,
+                          @Value("${chat.batch.max-messages:500}") int maxBatchMessages) {
         this.userService = userService;
         this.chatMessageRepo = chatMessageRepo;
+        this.chatMetrics = chatMetrics;
+        this.messageFanout = messageFanout;
+        this.userDirectory = userDirectory;
+        this.attachmentService = attachmentService;
+        this.inboxService = inboxService;
+        this.messageScheduler = messageScheduler;
+        this.presenceRegistry = presenceRegistry;
+        this.readYourWrites = readYourWrites;
+        this.resourceVersions = resourceVersions;
+        this.overloadController = overloadController;
+        this.maxBatchMessages = maxBatchMessages;
     }
 
     @MessageMapping("/chat.adduser") // websocket destination for adding a user
     @SendTo("/topic/group") // This will broadcast the message to all subscribers of /topic/group {channel}
+    @Timed(value = "chat.handler", extraTags = {"handler", "chat.adduser"}, histogram = true)
     public ChatMessage addUser(@Payload ChatMessage chatMessage, SimpMessageHeaderAccessor headAccessor) {
         if (userService.userExists(chatMessage.getSender())) {
             // store user in session
             headAccessor.getSessionAttributes().put("username", chatMessage.getSender());
+            presenceRegistry.sessionOpened(headAccessor.getSessionId(), chatMessage.getSender());
             userService.setUserOnlineStatus(chatMessage.getSender(), true);
 
-            System.out.println("User added: " + chatMessage.getSender() + " is online"
-                    + " with Session ID: " + headAccessor.getSessionId());
+            logger.debug("User added: {} is online with Session ID: {}", chatMessage.getSender(),
+                    headAccessor.getSessionId());
 
             chatMessage.setTimestamp(LocalDateTime.now());
             chatMessage.setMessageType(ChatMessage.MessageType.JOIN);
@@ -44,13 +91,18 @@ public class ChatController {
                 chatMessage.setContent(" ");
             }
 
-            return chatMessageRepo.save(chatMessage);
+            // Still broadcast under overload, just not stored
+            if (overloadController.shed(OverloadMode.SKIP_PRESENCE_PERSISTENCE)) {
+                return chatMessage;
+            }
+            return persist(chatMessage);
         }
         return null;
     }
 
     @MessageMapping("/chat.send") // websocket destination for sending a message
     @SendTo("/topic/group")
+    @Timed(value = "chat.handler", extraTags = {"handler", "chat.send"}, histogram = true)
     public ChatMessage sendMessage(@Payload ChatMessage chatMessage) {
         if (userService.userExists(chatMessage.getSender())) {
             if (chatMessage.getTimestamp() == null) {
@@ -60,14 +112,62 @@ public class ChatController {
                 chatMessage.setContent(" ");
             }
             chatMessage.setMessageType(ChatMessage.MessageType.CHAT);
-            return chatMessageRepo.save(chatMessage);
+            return persist(chatMessage);
         }
         return null;
     }
 
+    /**
+     * Group messages sent as one JSON array, e.g. a multi-line paste or a bot
+     * replaying history. They are stored in one transaction and broadcast as a
+     * single frame holding the array. Every message must come from the session's
+     * user, otherwise the whole batch is dropped.
+     */
+    @MessageMapping("/chat.sendBatch")
+    @Timed(value = "chat.handler", extraTags = {"handler", "chat.sendBatch"}, histogram = true)
+    public void sendBatch(@Payload List<ChatMessage> chatMessages, SimpMessageHeaderAccessor headAccessor) {
+        if (chatMessages == null || chatMessages.isEmpty()) {
+            return;
+        }
+        if (chatMessages.size() > maxBatchMessages) {
+            logger.warn("Ignoring batch of {} messages, the limit is {}", chatMessages.size(), maxBatchMessages);
+            return;
+        }
+        // The token's user, or the one the session joined as
+        String sessionUser = headAccessor.getUser() != null ? headAccessor.getUser().getName()
+                : headAccessor.getSessionAttributes() != null
+                ? (String) headAccessor.getSessionAttributes().get("username") : null;
+        if (sessionUser == null || !userService.userExists(sessionUser)) {
+            logger.warn("Ignoring batch from session {} without a known user", headAccessor.getSessionId());
+            return;
+        }
+        for (ChatMessage chatMessage : chatMessages) {
+            if (!sessionUser.equals(chatMessage.getSender())) {
+                logger.warn("Ignoring batch from {} holding a message from {}", sessionUser, chatMessage.getSender());
+                return;
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (ChatMessage chatMessage : chatMessages) {
+            if (chatMessage.getTimestamp() == null) {
+                chatMessage.setTimestamp(now);
+            }
+            if (chatMessage.getContent() == null) {
+                chatMessage.setContent(" ");
+            }
+            chatMessage.setMessageType(ChatMessage.MessageType.CHAT);
+            chatMessage.setReceiver(null);
+        }
+        messageFanout.send(persistAll(chatMessages), "/topic/group");
+    }
+
     @MessageMapping("/chat.typing")
     @SendTo("/topic/group")
+    @Timed(value = "chat.handler", extraTags = {"handler", "chat.typing"}, histogram = true)
     public ChatMessage handleTyping(@Payload ChatMessage chatMessage) {
+        if (overloadController.shed(OverloadMode.SHED_TYPING)) {
+            return null;
+        }
         if (userService.userExists(chatMessage.getSender())) {
             chatMessage.setTimestamp(LocalDateTime.now());
             chatMessage.setMessageType(ChatMessage.MessageType.TYPING);
@@ -77,6 +177,7 @@ public class ChatController {
     }
 
     @MessageMapping("/chat.private")
+    @Timed(value = "chat.handler", extraTags = {"handler", "chat.private"}, histogram = true)
     public void sendPrivateMessage(@Payload ChatMessage chatMessage, SimpMessageHeaderAccessor headerAccessor) {
         if (userService.userExists(chatMessage.getSender()) && userService.userExists(chatMessage.getReceiver())) {
             if (chatMessage.getTimestamp() == null) {
@@ -88,28 +189,132 @@ public class ChatController {
 
             chatMessage.setMessageType(ChatMessage.MessageType.PRIVATE_MESSAGE);
 
-            ChatMessage savedMessage = chatMessageRepo.save(chatMessage);
-            System.out.println("Message save successfully with id " + savedMessage.getId());
+            ChatMessage savedMessage = persist(chatMessage);
+            logger.debug("Message saved successfully with id {}", savedMessage.getId());
+            try {
+                inboxService.recordPrivateMessage(savedMessage);
+            } catch (Exception e) {
+                logger.error("Error updating inbox for message {}: {}", savedMessage.getId(), e.getMessage(), e);
+            }
 
             try {
-                // Send the private message to the specific user
+                // Encode once and deliver the same bytes to the receiver and the sender
                 String recepientDestination = "/user/" + chatMessage.getReceiver() + "/queue/private";
-                System.out.println("Sending private message to: " + recepientDestination + " for user: "
-                        + chatMessage.getReceiver()
-                        + " with content: " + chatMessage.getContent());
-                messagingTemplate.convertAndSend(recepientDestination, savedMessage);
-
                 String senderDestination = "/user/" + chatMessage.getSender() + "/queue/private";
-                System.out.println(
-                        "Sending private message to: " + senderDestination + " for user: " + chatMessage.getSender()
-                                + " with content: " + chatMessage.getContent());
-                messagingTemplate.convertAndSend(senderDestination, savedMessage);
+                logger.debug("Sending private message to: {} and {}", recepientDestination, senderDestination);
+                messageFanout.send(savedMessage, recepientDestination, senderDestination);
             } catch (Exception e) {
-                System.err.println("Error sending private message: " + e.getMessage());
+                logger.error("Error sending private message: {}", e.getMessage(), e);
             }
         } else {
-            System.err.println("Error: User does not exist or is offline. Sender: " + chatMessage.getSender()
-                    + ", Receiver: " + chatMessage.getReceiver());
+            logger.warn("User does not exist or is offline. Sender: {}, Receiver: {}", chatMessage.getSender(),
+                    chatMessage.getReceiver());
+        }
+    }
+
+    @MessageMapping("/chat.schedule")
+    @Timed(value = "chat.handler", extraTags = {"handler", "chat.schedule"}, histogram = true)
+    public void scheduleMessage(@Payload ChatMessage chatMessage) {
+        if (chatMessage.getSendAt() == null || !userService.userExists(chatMessage.getSender())) {
+            logger.warn("Ignoring schedule request from {} for {}", chatMessage.getSender(), chatMessage.getSendAt());
+            return;
+        }
+        boolean isPrivate = chatMessage.getReceiver() != null;
+        if (isPrivate && !userService.userExists(chatMessage.getReceiver())) {
+            logger.warn("Ignoring schedule request for unknown receiver {}", chatMessage.getReceiver());
+            return;
+        }
+        chatMessage.setMessageType(isPrivate ? ChatMessage.MessageType.PRIVATE_MESSAGE : ChatMessage.MessageType.CHAT);
+        userDirectory.assignIds(chatMessage);
+        Long id = messageScheduler.scheduleSend(chatMessage, chatMessage.getSendAt()).getId();
+        logger.debug("Scheduled message {} from {} for {}", id, chatMessage.getSender(), chatMessage.getSendAt());
+    }
+
+    // Delivery of scheduled sends and expiries goes through the same paths as live messages
+    @EventListener
+    public void onScheduledMessageDue(ScheduledMessageDueEvent event) {
+        ScheduledMessage scheduled = event.scheduledMessage();
+        if (scheduled.getKind() == ScheduledMessage.Kind.SEND) {
+            ChatMessage chatMessage = new ChatMessage();
+            chatMessage.setSender(userDirectory.usernameOf(scheduled.getSenderId()));
+            chatMessage.setReceiver(userDirectory.usernameOf(scheduled.getReceiverId()));
+            chatMessage.setContent(scheduled.getBody() != null ? scheduled.getBody().text() : null);
+            chatMessage.setAttachmentId(scheduled.getAttachmentId());
+            chatMessage.setColor(scheduled.getColor());
+            chatMessage.setExpiresAt(scheduled.getExpiresAt());
+            chatMessage.setTimestamp(LocalDateTime.now());
+            if (scheduled.getMessageType() == ChatMessage.MessageType.PRIVATE_MESSAGE) {
+                sendPrivateMessage(chatMessage, null);
+            } else {
+                ChatMessage savedMessage = sendMessage(chatMessage);
+                if (savedMessage != null) {
+                    messageFanout.send(savedMessage, "/topic/group");
+                }
+            }
+            return;
+        }
+
+        readYourWrites.readPrimary(() -> chatMessageRepo.findById(scheduled.getMessageId())).ifPresent(expiredMessage -> {
+            chatMessageRepo.delete(expiredMessage);
+            if (expiredMessage.getConversationKey() != null) {
+                resourceVersions.conversationChanged(expiredMessage.getConversationKey());
+                try {
+                    inboxService.recordDeletion(expiredMessage);
+                } catch (Exception e) {
+                    logger.error("Error updating inbox for expired message {}: {}", expiredMessage.getId(),
+                            e.getMessage(), e);
+                }
+            }
+            ChatMessage notice = new ChatMessage();
+            notice.setId(expiredMessage.getId());
+            notice.setMessageType(ChatMessage.MessageType.DELETE);
+            notice.setSender(userDirectory.usernameOf(expiredMessage.getSenderId()));
+            notice.setReceiver(userDirectory.usernameOf(expiredMessage.getReceiverId()));
+            notice.setContent(" ");
+            notice.setTimestamp(LocalDateTime.now());
+            if (expiredMessage.getConversationKey() != null) {
+                messageFanout.send(notice, "/user/" + notice.getReceiver() + "/queue/private",
+                        "/user/" + notice.getSender() + "/queue/private");
+            } else {
+                messageFanout.send(notice, "/topic/group");
+            }
+            logger.debug("Message {} expired", expiredMessage.getId());
+        });
+    }
+
+    private ChatMessage persist(ChatMessage chatMessage) {
+        prepareForSave(chatMessage);
+        ChatMessage savedMessage = chatMessageRepo.save(chatMessage);
+        afterSave(savedMessage);
+        return savedMessage;
+    }
+
+    // saveAll runs in a single transaction
+    private List<ChatMessage> persistAll(List<ChatMessage> chatMessages) {
+        chatMessages.forEach(this::prepareForSave);
+        List<ChatMessage> savedMessages = chatMessageRepo.saveAll(chatMessages);
+        savedMessages.forEach(this::afterSave);
+        return savedMessages;
+    }
+
+    private void prepareForSave(ChatMessage chatMessage) {
+        userDirectory.assignIds(chatMessage);
+        if (chatMessage.getAttachmentId() != null && !attachmentService.attachmentExists(chatMessage.getAttachmentId())) {
+            logger.warn("Dropping unknown attachment {} from message by {}", chatMessage.getAttachmentId(),
+                    chatMessage.getSender());
+            chatMessage.setAttachmentId(null);
+        }
+    }
+
+    private void afterSave(ChatMessage savedMessage) {
+        chatMetrics.messagePersisted(savedMessage.getMessageType());
+        if (savedMessage.getConversationKey() != null) {
+            // both participants reload this conversation right after the send
+            resourceVersions.conversationChanged(savedMessage.getConversationKey());
+        }
+        if (savedMessage.getExpiresAt() != null && (savedMessage.getMessageType() == ChatMessage.MessageType.CHAT
+                || savedMessage.getMessageType() == ChatMessage.MessageType.PRIVATE_MESSAGE)) {
+            messageScheduler.scheduleExpiry(savedMessage);
         }
     }
 }
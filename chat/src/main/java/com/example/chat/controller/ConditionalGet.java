@@ -0,0 +1,49 @@
+package com.example.chat.controller;
+
+import com.example.chat.metrics.ChatMetrics;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * Conditional GET handling for endpoints backed by
+ * {@link com.example.chat.service.ResourceVersions}. The tag is checked before
+ * the handler loads or serializes anything.
+ */
+@Component
+public class ConditionalGet {
+
+    private final ChatMetrics chatMetrics;
+
+    public ConditionalGet(ChatMetrics chatMetrics) {
+        this.chatMetrics = chatMetrics;
+    }
+
+    /**
+     * Writes the caching headers and, if the client already holds {@code etag},
+     * completes the response with a 304.
+     *
+     * @param etag the current tag, or {@code null} if the resource is not versioned
+     * @return {@code true} if the handler should return {@code null} without doing any work
+     */
+    public boolean notModified(ServletWebRequest request, String resource, String etag, CacheControl cacheControl) {
+        HttpServletResponse response = request.getResponse();
+        if (response != null) {
+            // Set here so Spring Security's no-store default does not replace it
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        }
+        if (etag == null) {
+            chatMetrics.conditionalGet(resource, "unversioned");
+            return false;
+        }
+        if (request.checkNotModified(etag)) {
+            chatMetrics.conditionalGet(resource, "not_modified");
+            return true;
+        }
+        chatMetrics.conditionalGet(resource,
+                request.getHeader(HttpHeaders.IF_NONE_MATCH) != null ? "modified" : "unconditional");
+        return false;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.chat.controller;
+
+import com.example.chat.dto.InboxEntryDTO;
+import com.example.chat.model.User;
+import com.example.chat.service.InboxService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/inbox")
+public class InboxController {
+
+    private final InboxService inboxService;
+
+    public InboxController(InboxService inboxService) {
+        this.inboxService = inboxService;
+    }
+
+    // Conversations of the caller, most recently active first
+    @GetMapping
+    public ResponseEntity<List<InboxEntryDTO>> getInbox(@AuthenticationPrincipal User caller) {
+        return ResponseEntity.ok(inboxService.getInbox(caller.getUsername()));
+    }
+
+    @PostMapping("/read")
+    public ResponseEntity<Void> markRead(@AuthenticationPrincipal User caller, @RequestParam String partner) {
+        return inboxService.markRead(caller.getUsername(), partner)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+}
@@ -1,12 +1,24 @@
 package com.example.chat.controller;
 
 import com.example.chat.model.ChatMessage;
+import com.example.chat.model.User;
+import com.example.chat.overload.OverloadController;
+import com.example.chat.overload.OverloadMode;
 import com.example.chat.repo.ChatMessageRepo;
+import com.example.chat.service.HistoryCache;
+import com.example.chat.service.ReadYourWrites;
+import com.example.chat.service.ResourceVersions;
+import com.example.chat.service.UserDirectory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.List;
 
@@ -15,17 +27,68 @@ import java.util.List;
 public class MessageController {
 
     private final ChatMessageRepo chatMessageRepo;
+    private final UserDirectory userDirectory;
+    private final ReadYourWrites readYourWrites;
+    private final ResourceVersions resourceVersions;
+    private final ConditionalGet conditionalGet;
+    private final OverloadController overloadController;
+    private final HistoryCache historyCache;
 
-    public MessageController(ChatMessageRepo chatMessageRepo) {
+    public MessageController(ChatMessageRepo chatMessageRepo, UserDirectory userDirectory,
+                             ReadYourWrites readYourWrites, ResourceVersions resourceVersions,
+                             ConditionalGet conditionalGet, OverloadController overloadController,
+                             HistoryCache historyCache) {
         this.chatMessageRepo = chatMessageRepo;
+        this.userDirectory = userDirectory;
+        this.readYourWrites = readYourWrites;
+        this.resourceVersions = resourceVersions;
+        this.conditionalGet = conditionalGet;
+        this.overloadController = overloadController;
+        this.historyCache = historyCache;
     }
 
+    // The caller has to be one of the two users; user1 defaults to the caller
     @GetMapping("/private")
-    public ResponseEntity<List<ChatMessage>> getPrivateMessages(@RequestParam String user1 , @RequestParam String user2){
-        List<ChatMessage> chatMessages = chatMessageRepo.findPrivateMessagesBetweenTwoUsers(user1,user2);
+    public ResponseEntity<List<ChatMessage>> getPrivateMessages(@AuthenticationPrincipal User caller,
+                                                                @RequestParam(required = false) String user1,
+                                                                @RequestParam String user2,
+                                                                ServletWebRequest request){
+        String me = caller.getUsername();
+        String partner;
+        if (user1 == null || user1.equals(me)) {
+            partner = user2;
+        } else if (user2.equals(me)) {
+            partner = user1;
+        } else {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        Long partnerId = userDirectory.idOf(partner);
+        if (partnerId == null) {
+            return ResponseEntity.ok(List.of());
+        }
+        long conversationKey = ChatMessage.conversationKey(caller.getId(), partnerId);
+        String etag = resourceVersions.conversationTag(conversationKey);
+        if (conditionalGet.notModified(request, "history", etag, CacheControl.noCache().cachePrivate())) {
+            return null;
+        }
+        // A client whose copy is current still got its 304 above. The response already carries the
+        // current tag, so a cached copy is only served if it is that version; unversioned copies
+        // (relay mode) may be behind, but nothing lets the client keep them as current.
+        if (overloadController.shed(OverloadMode.CACHE_ONLY_HISTORY)) {
+            HistoryCache.CachedHistory cached = historyCache.get(conversationKey);
+            if (cached != null && (etag == null || etag.equals(cached.etag()))) {
+                return ResponseEntity.ok(cached.messages());
+            }
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(overloadController.retryAfterSeconds()))
+                    .build();
+        }
+        List<ChatMessage> chatMessages = userDirectory.resolveNames(readYourWrites.read(
+                ReadYourWrites.conversationKey(conversationKey),
+                () -> chatMessageRepo.findPrivateConversation(conversationKey)));
+        historyCache.put(conversationKey, etag, chatMessages);
         return ResponseEntity.ok(chatMessages);
     }
 
 
 }
-
@@ -0,0 +1,33 @@
+package com.example.chat.controller;
+
+import com.example.chat.dto.UserSearchResultDTO;
+import com.example.chat.service.UserSearchIndex;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/users")
+public class UserController {
+
+    private static final int MAX_LIMIT = 50;
+
+    private final UserSearchIndex userSearchIndex;
+
+    public UserController(UserSearchIndex userSearchIndex) {
+        this.userSearchIndex = userSearchIndex;
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<UserSearchResultDTO>> search(@RequestParam String prefix,
+                                                            @RequestParam(defaultValue = "20") int limit) {
+        if (prefix.isBlank() || limit < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(userSearchIndex.search(prefix, Math.min(limit, MAX_LIMIT)));
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.chat.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class AttachmentDTO {
+    private Long id;
+    private String sha256;
+    private String fileName;
+    private String contentType;
+    private Long size;
+}
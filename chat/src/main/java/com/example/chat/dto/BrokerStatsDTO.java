@@ -0,0 +1,39 @@
+package com.example.chat.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+public class BrokerStatsDTO {
+    private long timestamp;
+
+    // sessions by transport, as counted by SubProtocolWebSocketHandler
+    private int openSessions;
+    private int sessionsOpenedSinceStart;
+    private int webSocketSessions;
+    private int httpStreamingSessions;
+    private int httpPollingSessions;
+    private int limitExceededSessions;
+    private int noMessagesReceivedSessions;
+    private int transportErrorSessions;
+
+    private int stompConnected;
+    private int stompDisconnected;
+    private int principalUsers;
+
+    private int destinationCount;
+    private Map<String, Integer> topDestinations;
+
+    private int inboundQueueDepth;
+    private int inboundActiveThreads;
+    private int outboundQueueDepth;
+    private int outboundActiveThreads;
+
+    private long bufferedBytes;
+    // largest per-session send buffers, without session ids
+    private List<Integer> largestSessionBuffers;
+}
@@ -0,0 +1,16 @@
+package com.example.chat.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class InboxEntryDTO {
+    private String partner;
+    private Long lastMessageId;
+    private String lastPreview;
+    private LocalDateTime lastTimestamp;
+    private Integer unreadCount;
+}
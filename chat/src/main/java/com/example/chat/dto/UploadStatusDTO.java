@@ -0,0 +1,15 @@
+package com.example.chat.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class UploadStatusDTO {
+    private String uploadId;
+    private Long size;
+    // Bytes received so far; the next chunk has to start here
+    private Long offset;
+    // Set once the last chunk has arrived
+    private AttachmentDTO attachment;
+}
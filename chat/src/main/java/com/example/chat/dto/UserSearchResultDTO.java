@@ -0,0 +1,9 @@
+package com.example.chat.dto;
+
+import lombok.Data;
+
+@Data
+public class UserSearchResultDTO {
+    private String username;
+    private Boolean isOnline;
+}
@@ -13,6 +13,7 @@ import javax.crypto.SecretKey;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 import jakarta.annotation.PostConstruct;
 
@@ -41,36 +42,38 @@ public class JwtService {
                 throw new IllegalArgumentException("JWT token is null or empty");
             }
 
-            return extractClaims(jwtToken, claims -> {
-                Object userIdClaim = claims.get("userId");
-                logger.debug("Extracted userId claim: {} (type: {})", userIdClaim,
-                        userIdClaim != null ? userIdClaim.getClass().getSimpleName() : "null");
-
-                if (userIdClaim == null) {
-                    throw new IllegalArgumentException("userId claim is null");
-                }
-
-                // Handle different numeric types
-                if (userIdClaim instanceof Number) {
-                    return ((Number) userIdClaim).longValue();
-                } else if (userIdClaim instanceof String) {
-                    try {
-                        return Long.parseLong((String) userIdClaim);
-                    } catch (NumberFormatException e) {
-                        throw new IllegalArgumentException(
-                                "userId claim string cannot be parsed as Long: " + userIdClaim);
-                    }
-                }
-
-                throw new IllegalArgumentException(
-                        "Invalid userId claim type: " + userIdClaim.getClass() + ", value: " + userIdClaim);
-            });
+            return extractClaims(jwtToken, this::extractUserId);
         } catch (Exception e) {
             logger.error("Error extracting userId from JWT token: {}", e.getMessage(), e);
             throw e;
         }
     }
 
+    public Long extractUserId(Claims claims) {
+        Object userIdClaim = claims.get("userId");
+        logger.debug("Extracted userId claim: {} (type: {})", userIdClaim,
+                userIdClaim != null ? userIdClaim.getClass().getSimpleName() : "null");
+
+        if (userIdClaim == null) {
+            throw new IllegalArgumentException("userId claim is null");
+        }
+
+        // Handle different numeric types
+        if (userIdClaim instanceof Number) {
+            return ((Number) userIdClaim).longValue();
+        } else if (userIdClaim instanceof String) {
+            try {
+                return Long.parseLong((String) userIdClaim);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        "userId claim string cannot be parsed as Long: " + userIdClaim);
+            }
+        }
+
+        throw new IllegalArgumentException(
+                "Invalid userId claim type: " + userIdClaim.getClass() + ", value: " + userIdClaim);
+    }
+
     private <T> T extractClaims(String jwtToken, Function<Claims, T> claimsResolver) {
         try {
             final Claims claims = extractAllClaims(jwtToken);
@@ -124,6 +127,7 @@ public class JwtService {
 
             String token = Jwts.builder()
                     .claims(claims)
+                    .id(UUID.randomUUID().toString())
                     .subject(user.getUsername())
                     .issuedAt(new Date(System.currentTimeMillis()))
                     .expiration(new Date(System.currentTimeMillis() + jwtExpiration))
@@ -151,61 +155,75 @@ public class JwtService {
     public boolean isTokenValid(String jwtToken, User user) {
         try {
             logger.info("Validating JWT token for user: {}", user.getUsername());
+            return isTokenValid(extractUserId(jwtToken), isTokenExpired(jwtToken), user);
+        } catch (Exception e) {
+            logger.error("Error validating JWT token for user {}: {}", user.getUsername(), e.getMessage(), e);
+            return false;
+        }
+    }
 
-            final Long userIdFromToken = extractUserId(jwtToken);
-            final Long userId = user.getId();
+    // For callers that already parsed and verified the token, so it is not parsed again
+    public boolean isTokenValid(Claims claims, User user) {
+        try {
+            logger.info("Validating JWT claims for user: {}", user.getUsername());
+            return isTokenValid(extractUserId(claims), isTokenExpired(claims.getExpiration()), user);
+        } catch (Exception e) {
+            logger.error("Error validating JWT claims for user {}: {}", user.getUsername(), e.getMessage(), e);
+            return false;
+        }
+    }
 
-            logger.info("UserId from token: {}, UserId from user: {}", userIdFromToken, userId);
+    private boolean isTokenValid(Long userIdFromToken, boolean isExpired, User user) {
+        final Long userId = user.getId();
 
-            boolean isExpired = isTokenExpired(jwtToken);
-            logger.info("Token expired: {}", isExpired);
+        logger.info("UserId from token: {}, UserId from user: {}", userIdFromToken, userId);
+        logger.info("Token expired: {}", isExpired);
 
-            boolean isValid = (userIdFromToken != null && userIdFromToken.equals(userId) && !isExpired);
-            logger.info("Token validation result: {}", isValid);
+        boolean isValid = (userIdFromToken != null && userIdFromToken.equals(userId) && !isExpired);
+        logger.info("Token validation result: {}", isValid);
 
-            if (!isValid) {
-                if (userIdFromToken == null) {
-                    logger.warn("UserId from token is null");
-                } else if (!userIdFromToken.equals(userId)) {
-                    logger.warn("UserId mismatch: token={}, user={}", userIdFromToken, userId);
-                } else if (isExpired) {
-                    logger.warn("Token is expired");
-                }
+        if (!isValid) {
+            if (userIdFromToken == null) {
+                logger.warn("UserId from token is null");
+            } else if (!userIdFromToken.equals(userId)) {
+                logger.warn("UserId mismatch: token={}, user={}", userIdFromToken, userId);
+            } else if (isExpired) {
+                logger.warn("Token is expired");
             }
-
-            return isValid;
-        } catch (Exception e) {
-            logger.error("Error validating JWT token for user {}: {}", user.getUsername(), e.getMessage(), e);
-            return false;
         }
+
+        return isValid;
     }
 
     private boolean isTokenExpired(String jwtToken) {
         try {
-            Date expiration = extractExpiration(jwtToken);
-            Date now = new Date();
-            boolean expired = expiration.before(now);
-
-            logger.info("Token expiration check - Expiration: {}, Now: {}, Expired: {}",
-                    expiration, now, expired);
-
-            if (expired) {
-                long diffInMillis = now.getTime() - expiration.getTime();
-                long diffInMinutes = diffInMillis / (1000 * 60);
-                logger.warn("Token expired {} minutes ago", diffInMinutes);
-            } else {
-                long diffInMillis = expiration.getTime() - now.getTime();
-                long diffInMinutes = diffInMillis / (1000 * 60);
-                logger.info("Token will expire in {} minutes", diffInMinutes);
-            }
-
-            return expired;
+            return isTokenExpired(extractExpiration(jwtToken));
         } catch (Exception e) {
             logger.error("Error checking token expiration: {}", e.getMessage(), e);
             return true;
         }
     }
 
+    private boolean isTokenExpired(Date expiration) {
+        Date now = new Date();
+        boolean expired = expiration.before(now);
+
+        logger.info("Token expiration check - Expiration: {}, Now: {}, Expired: {}",
+                expiration, now, expired);
+
+        if (expired) {
+            long diffInMillis = now.getTime() - expiration.getTime();
+            long diffInMinutes = diffInMillis / (1000 * 60);
+            logger.warn("Token expired {} minutes ago", diffInMinutes);
+        } else {
+            long diffInMillis = expiration.getTime() - now.getTime();
+            long diffInMinutes = diffInMillis / (1000 * 60);
+            logger.info("Token will expire in {} minutes", diffInMinutes);
+        }
+
+        return expired;
+    }
+
     private Date extractExpiration(String jwtToken) {
         return extractClaims(jwtToken, Claims::getExpiration);
     }
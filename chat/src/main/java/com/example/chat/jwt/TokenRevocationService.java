@@ -0,0 +1,173 @@
+package com.example.chat.jwt;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the ids ({@code jti}) of tokens revoked before their expiry. Lookups are
+ * in-memory only: a Bloom filter answers the common "not revoked" case and the
+ * backing map confirms hits. Entries are dropped once the token's own {@code exp}
+ * has passed, and the set is snapshotted to local disk so it survives a restart.
+ */
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x4A544952; // "JTIR"
+
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "token-revocation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile BloomFilter filter;
+    private volatile boolean dirty;
+
+    @Value("${jwt.revocation.snapshot-path:data/revoked-tokens.bin}")
+    private String snapshotPath;
+
+    @Value("${jwt.revocation.expected-revocations:100000}")
+    private int expectedRevocations;
+
+    @Value("${jwt.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${jwt.revocation.maintenance-interval-ms:5000}")
+    private long maintenanceIntervalMs;
+
+    @PostConstruct
+    public void init() {
+        filter = new BloomFilter(expectedRevocations, falsePositiveRate);
+        loadSnapshot();
+        maintenance.scheduleWithFixedDelay(this::maintain, maintenanceIntervalMs, maintenanceIntervalMs,
+                TimeUnit.MILLISECONDS);
+        logger.info("Token revocation initialized with {} revoked tokens from {}", revokedTokens.size(), snapshotPath);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        maintenance.shutdownNow();
+        writeSnapshot();
+    }
+
+    public void revoke(String tokenId, long expiresAtMillis) {
+        if (tokenId == null || expiresAtMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        synchronized (writeLock) {
+            revokedTokens.put(tokenId, expiresAtMillis);
+            filter.put(tokenId);
+            dirty = true;
+        }
+        logger.debug("Revoked token {} until {}", tokenId, expiresAtMillis);
+    }
+
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null || !filter.mightContain(tokenId)) {
+            return false;
+        }
+        Long expiresAt = revokedTokens.get(tokenId);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    public int size() {
+        return revokedTokens.size();
+    }
+
+    void maintain() {
+        try {
+            purgeExpired();
+            if (dirty) {
+                writeSnapshot();
+            }
+        } catch (Exception e) {
+            logger.error("Token revocation maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (writeLock) {
+            if (!revokedTokens.values().removeIf(expiresAt -> expiresAt <= now)) {
+                return;
+            }
+            // Bloom filters cannot forget, so rebuild from the surviving entries
+            BloomFilter rebuilt = new BloomFilter(Math.max(expectedRevocations, revokedTokens.size() * 2),
+                    falsePositiveRate);
+            revokedTokens.keySet().forEach(rebuilt::put);
+            filter = rebuilt;
+            dirty = true;
+        }
+    }
+
+    private void loadSnapshot() {
+        Path path = Paths.get(snapshotPath);
+        if (!Files.exists(path)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                logger.warn("Ignoring token revocation snapshot with unknown format: {}", path);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String tokenId = in.readUTF();
+                long expiresAt = in.readLong();
+                if (expiresAt > now) {
+                    revokedTokens.put(tokenId, expiresAt);
+                    filter.put(tokenId);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Error reading token revocation snapshot {}: {}", path, e.getMessage(), e);
+        }
+    }
+
+    private void writeSnapshot() {
+        Path path = Paths.get(snapshotPath);
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, "revoked-tokens", ".tmp");
+            Map<String, Long> entries = Map.copyOf(revokedTokens);
+            dirty = false;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            logger.error("Error writing token revocation snapshot {}: {}", path, e.getMessage(), e);
+        }
+    }
+}
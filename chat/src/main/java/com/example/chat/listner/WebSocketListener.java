@@ -1,12 +1,13 @@
 package com.example.chat.listner;
 
 import com.example.chat.model.ChatMessage;
+import com.example.chat.presence.PresenceRegistry;
 import com.example.chat.service.UserService;
+import com.example.chat.websocket.MessageFanout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
-import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
@@ -16,7 +17,9 @@ import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 public class WebSocketListener {
     private final UserService userService;
     @Autowired
-    private SimpMessageSendingOperations messagingTemplate;
+    private MessageFanout messageFanout;
+    @Autowired
+    private PresenceRegistry presenceRegistry;
 
     private static final Logger logger = LoggerFactory.getLogger(WebSocketListener.class);
 
@@ -35,7 +38,13 @@ public class WebSocketListener {
         String username = (String) headerAccessor.getSessionAttributes().get("username");
 
         if (username != null) {
-            System.out.println("User disconnected: " + username + " with Session ID: " + headerAccessor.getSessionId());
+            logger.debug("User disconnected: {} with Session ID: {}", username, headerAccessor.getSessionId());
+            presenceRegistry.sessionClosed(headerAccessor.getSessionId());
+            // Another tab or another node may still hold a session for this user
+            if (presenceRegistry.isOnline(username)) {
+                logger.debug("User {} is still connected elsewhere", username);
+                return;
+            }
             userService.setUserOnlineStatus(username, false);
 
             ChatMessage chatMessage = new ChatMessage();
@@ -44,7 +53,7 @@ public class WebSocketListener {
             chatMessage.setContent(" ");
             chatMessage.setTimestamp(java.time.LocalDateTime.now());
 
-            messagingTemplate.convertAndSend("/topic/group", chatMessage);
+            messageFanout.send(chatMessage, "/topic/group");
         }
     }
 }
@@ -0,0 +1,75 @@
+package com.example.chat.metrics;
+
+import com.example.chat.model.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Application-level counters for the message pipeline. Handler and repository
+ * timings come from {@code @Timed} and Spring Data's repository metrics.
+ */
+@Component
+public class ChatMetrics {
+
+    private final Map<ChatMessage.MessageType, Counter> persisted = new EnumMap<>(ChatMessage.MessageType.class);
+    private final Counter fanoutTopic;
+    private final Counter fanoutUser;
+    private final Counter fanoutOther;
+    private final Map<String, Counter> conditionalGets = new ConcurrentHashMap<>();
+    private final MeterRegistry registry;
+
+    public ChatMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (ChatMessage.MessageType type : ChatMessage.MessageType.values()) {
+            persisted.put(type, Counter.builder("chat.messages.persisted")
+                    .description("Chat messages written to the database")
+                    .tag("type", type.name())
+                    .register(registry));
+        }
+        this.fanoutTopic = fanoutCounter(registry, "topic");
+        this.fanoutUser = fanoutCounter(registry, "user");
+        this.fanoutOther = fanoutCounter(registry, "other");
+    }
+
+    public void messagePersisted(ChatMessage.MessageType type) {
+        persisted.get(type).increment();
+    }
+
+    public void messageFannedOut(String destination) {
+        if (destination == null) {
+            fanoutOther.increment();
+        } else if (destination.startsWith("/topic/")) {
+            fanoutTopic.increment();
+        } else if (destination.startsWith("/user/")) {
+            fanoutUser.increment();
+        } else {
+            fanoutOther.increment();
+        }
+    }
+
+    /**
+     * Counts a GET on a versioned resource. The outcome is {@code not_modified} for
+     * a 304, {@code modified} when the client's tag was stale, {@code unconditional}
+     * when it sent none and {@code unversioned} when no tag could be issued; the 304
+     * ratio is not_modified over all.
+     */
+    public void conditionalGet(String resource, String outcome) {
+        conditionalGets.computeIfAbsent(resource + ':' + outcome, key -> Counter.builder("chat.http.conditional")
+                .description("GETs on versioned resources by outcome")
+                .tag("resource", resource)
+                .tag("outcome", outcome)
+                .register(registry)).increment();
+    }
+
+    private static Counter fanoutCounter(MeterRegistry registry, String destinationType) {
+        return Counter.builder("chat.messages.fanout")
+                .description("MESSAGE frames written to client sessions")
+                .tag("destination", destinationType)
+                .register(registry);
+    }
+}
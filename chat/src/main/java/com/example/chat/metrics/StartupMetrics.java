@@ -0,0 +1,50 @@
+package com.example.chat.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time from JVM start to the first STOMP CONNECTED frame, the point at which a
+ * restarted node is actually taking clients back. Spring Boot's own
+ * {@code application.started.time} and {@code application.ready.time} cover the
+ * context; the per-step breakdown is at {@code /actuator/startup}.
+ */
+@Component
+public class StartupMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupMetrics.class);
+
+    // -1 until the first connection is accepted
+    private final AtomicLong firstConnectMillis = new AtomicLong(-1);
+
+    public StartupMetrics(MeterRegistry registry) {
+        TimeGauge.builder("chat.startup.first.connect", firstConnectMillis, TimeUnit.MILLISECONDS,
+                        millis -> millis.get() < 0 ? Double.NaN : millis.get())
+                .description("Time from JVM start to the first accepted STOMP connection")
+                .register(registry);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        if (firstConnectMillis.get() >= 0) {
+            return;
+        }
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        if (firstConnectMillis.compareAndSet(-1, uptime)) {
+            logger.info("First STOMP connection accepted {} ms after JVM start", uptime);
+        }
+    }
+
+    public long getFirstConnectMillis() {
+        return firstConnectMillis.get();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.chat.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@Table(name = "attachments", indexes = {
+        @Index(name = "idx_attachments_sha256", columnList = "sha256")
+})
+public class Attachment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    // Hex SHA-256 of the file; also its name in the content store, shared by identical uploads
+    @Column(nullable = false, length = 64)
+    private String sha256;
+    @Column(nullable = false)
+    private String fileName;
+    private String contentType;
+    @Column(nullable = false)
+    private Long size;
+    @Column(name = "uploader_id")
+    private Long uploaderId;
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,28 +1,101 @@
 package com.example.chat.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 
 @Entity
 @Data
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = {
+        @Index(name = "idx_chat_messages_conversation", columnList = "conversation_key, timestamp"),
+        @Index(name = "idx_chat_messages_attachment", columnList = "attachment_id")
+})
 public class ChatMessage {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
-    private String content;
+
+    // Possibly compressed, see MessageBodyConverter; exposed as "content"
+    @JsonIgnore
+    @Convert(converter = MessageBodyConverter.class)
+    @Column(name = "content", length = MessageBodyConverter.MAX_STORED_BYTES)
+    private MessageBody body;
+
+    // Rows reference users by id; the usernames are filled in from UserDirectory
+    @JsonIgnore
+    @Column(name = "sender_id")
+    private Long senderId;
+    @JsonIgnore
+    @Column(name = "receiver_id")
+    private Long receiverId;
+    // Mapped only so the schema gets foreign keys to users; the code works with the ids above
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "sender_id", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(name = "fk_chat_messages_sender"))
+    private User senderUser;
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "receiver_id", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(name = "fk_chat_messages_receiver"))
+    private User receiverUser;
+    // Both participants packed into one value, only set for private messages. Derived from the
+    // two ids above, so it has no foreign key of its own.
+    @JsonIgnore
+    @Column(name = "conversation_key")
+    private Long conversationKey;
+
+    @Transient
     private String sender;
+    @Transient
     private String receiver;
+    // Chosen by the client per login and kept with each message, so history shows it as sent
+    @Convert(converter = ColorConverter.class)
     private String color;
+
+    // Files are uploaded through /api/attachments; a message only carries the id
+    @Column(name = "attachment_id")
+    private Long attachmentId;
+
+    // Set by the client on /app/chat.schedule; the message is published at this time
+    @Transient
+    private LocalDateTime sendAt;
+    // Self-destructing messages are deleted at this time
+    private LocalDateTime expiresAt;
+
     @Column(nullable = false)
     private LocalDateTime timestamp;
     @Enumerated(EnumType.STRING)
     private MessageType messageType;
 
+    public String getContent() {
+        return body != null ? body.text() : null;
+    }
+
+    public void setContent(String content) {
+        this.body = content != null ? MessageBody.of(content) : null;
+    }
+
     public enum MessageType {
-        CHAT, PRIVATE_MESSAGE, JOIN, LEAVE, TYPING
+        CHAT, PRIVATE_MESSAGE, JOIN, LEAVE, TYPING, DELETE
+    }
+
+    /**
+     * Key shared by both directions of a private conversation. User ids are
+     * expected to fit in 32 bits.
+     */
+    public static long conversationKey(long userId1, long userId2) {
+        long low = Math.min(userId1, userId2);
+        long high = Math.max(userId1, userId2);
+        return (low << 32) | high;
     }
 }
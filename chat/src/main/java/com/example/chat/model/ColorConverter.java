@@ -0,0 +1,30 @@
+package com.example.chat.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Stores a {@code #RRGGBB} color, which is all the client sends, as a 4-byte
+ * integer instead of a string column. Any other value is not stored.
+ */
+@Converter
+public class ColorConverter implements AttributeConverter<String, Integer> {
+
+    private static final Pattern HEX_COLOR = Pattern.compile("#[0-9a-fA-F]{6}");
+
+    @Override
+    public Integer convertToDatabaseColumn(String color) {
+        if (color == null || !HEX_COLOR.matcher(color).matches()) {
+            return null;
+        }
+        return HexFormat.fromHexDigits(color, 1, 7);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer rgb) {
+        return rgb != null ? "#" + HexFormat.of().withUpperCase().toHexDigits(rgb).substring(2) : null;
+    }
+}
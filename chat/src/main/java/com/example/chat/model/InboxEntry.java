@@ -0,0 +1,36 @@
+package com.example.chat.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row per (owner, partner) private conversation, kept up to date as
+ * messages are persisted so the sidebar does not need to scan histories.
+ */
+@Entity
+@Data
+@Table(name = "inbox_entries", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_inbox_owner_partner", columnNames = {"owner_id", "partner_id"})
+})
+public class InboxEntry {
+
+    public static final int PREVIEW_LENGTH = 80;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+    @Column(name = "partner_id", nullable = false)
+    private Long partnerId;
+    // Id of the latest message, which also orders conversations by activity
+    @Column(nullable = false)
+    private Long lastMessageId;
+    @Column(length = PREVIEW_LENGTH)
+    private String lastPreview;
+    private LocalDateTime lastTimestamp;
+    @Column(nullable = false)
+    private int unreadCount;
+}
@@ -0,0 +1,54 @@
+package com.example.chat.model;
+
+import org.hibernate.annotations.Immutable;
+
+import java.util.function.Function;
+
+/**
+ * Message text as stored by {@link MessageBodyConverter}. A body loaded from
+ * the database keeps the stored bytes and only decodes them the first time
+ * {@link #text()} is called; writing it back reuses the stored bytes.
+ */
+@Immutable
+public final class MessageBody {
+
+    private final byte[] stored;
+    private final Function<byte[], String> decoder;
+    private volatile String text;
+
+    private MessageBody(String text, byte[] stored, Function<byte[], String> decoder) {
+        this.text = text;
+        this.stored = stored;
+        this.decoder = decoder;
+    }
+
+    public static MessageBody of(String text) {
+        return new MessageBody(text, null, null);
+    }
+
+    static MessageBody stored(byte[] stored, Function<byte[], String> decoder) {
+        return new MessageBody(null, stored, decoder);
+    }
+
+    public String text() {
+        String result = text;
+        if (result == null) {
+            result = decoder.apply(stored);
+            text = result;
+        }
+        return result;
+    }
+
+    public boolean isDecoded() {
+        return text != null;
+    }
+
+    byte[] stored() {
+        return stored;
+    }
+
+    @Override
+    public String toString() {
+        return stored != null ? "MessageBody[" + stored.length + " bytes stored]" : "MessageBody[" + text + "]";
+    }
+}
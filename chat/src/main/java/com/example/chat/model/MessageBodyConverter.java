@@ -0,0 +1,194 @@
+package com.example.chat.model;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores message text as a marker byte followed by either the UTF-8 bytes or,
+ * for text of at least {@code chat.content.compression.threshold-bytes}, a
+ * Deflate stream prefixed with the uncompressed length. Compression is only
+ * kept when it actually saves space.
+ *
+ * <p>Created by Hibernate through Spring, so configuration and metrics are
+ * injected like in any other bean.
+ */
+@Component
+@Converter
+public class MessageBodyConverter implements AttributeConverter<MessageBody, byte[]> {
+
+    public static final int MAX_STORED_BYTES = 1 << 20;
+
+    static final byte PLAIN = 0;
+    static final byte DEFLATE = 1;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final int thresholdBytes;
+    private final int level;
+
+    private final Counter plainWrites;
+    private final Counter compressedWrites;
+    private final Counter rawBytes;
+    private final Counter storedBytes;
+    private final DistributionSummary compressionRatio;
+    private final Timer compressCpu;
+    private final Timer decompressCpu;
+
+    public MessageBodyConverter(MeterRegistry registry,
+                                @Value("${chat.content.compression.threshold-bytes:1024}") int thresholdBytes,
+                                @Value("${chat.content.compression.level:1}") int level) {
+        this.thresholdBytes = thresholdBytes;
+        this.level = level;
+        this.plainWrites = writeCounter(registry, "plain");
+        this.compressedWrites = writeCounter(registry, "deflate");
+        this.rawBytes = Counter.builder("chat.content.bytes")
+                .description("Message content bytes before encoding")
+                .baseUnit("bytes")
+                .tag("form", "raw")
+                .register(registry);
+        this.storedBytes = Counter.builder("chat.content.bytes")
+                .description("Message content bytes written to the database")
+                .baseUnit("bytes")
+                .tag("form", "stored")
+                .register(registry);
+        this.compressionRatio = DistributionSummary.builder("chat.content.compression.ratio")
+                .description("Stored size over raw size for content above the threshold")
+                .register(registry);
+        this.compressCpu = codecTimer(registry, "compress");
+        this.decompressCpu = codecTimer(registry, "decompress");
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(MessageBody body) {
+        if (body == null) {
+            return null;
+        }
+        if (body.stored() != null) {
+            return body.stored();
+        }
+        return encode(body.text());
+    }
+
+    @Override
+    public MessageBody convertToEntityAttribute(byte[] stored) {
+        return stored == null ? null : MessageBody.stored(stored, this::decode);
+    }
+
+    byte[] encode(String text) {
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        rawBytes.increment(raw.length);
+
+        byte[] stored = null;
+        if (raw.length >= thresholdBytes) {
+            long start = cpuTime();
+            stored = deflate(raw);
+            compressCpu.record(cpuTime() - start, TimeUnit.NANOSECONDS);
+            compressionRatio.record((double) stored.length / raw.length);
+            if (stored.length >= raw.length + 1) {
+                stored = null;
+            }
+        }
+        if (stored == null) {
+            stored = new byte[raw.length + 1];
+            stored[0] = PLAIN;
+            System.arraycopy(raw, 0, stored, 1, raw.length);
+            plainWrites.increment();
+        } else {
+            compressedWrites.increment();
+        }
+        if (stored.length > MAX_STORED_BYTES) {
+            throw new IllegalArgumentException("Message content is too large: " + stored.length + " bytes");
+        }
+        storedBytes.increment(stored.length);
+        return stored;
+    }
+
+    String decode(byte[] stored) {
+        if (stored[0] == PLAIN) {
+            return new String(stored, 1, stored.length - 1, StandardCharsets.UTF_8);
+        }
+        if (stored[0] != DEFLATE) {
+            throw new IllegalStateException("Unknown message content format " + stored[0]);
+        }
+        long start = cpuTime();
+        String text = new String(inflate(stored), StandardCharsets.UTF_8);
+        decompressCpu.record(cpuTime() - start, TimeUnit.NANOSECONDS);
+        return text;
+    }
+
+    private byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+            out.write(DEFLATE);
+            out.write(ByteBuffer.allocate(Integer.BYTES).putInt(raw.length).array(), 0, Integer.BYTES);
+            byte[] buffer = new byte[Math.min(raw.length, 8192)];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] stored) {
+        int length = ByteBuffer.wrap(stored, 1, Integer.BYTES).getInt();
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(stored, 1 + Integer.BYTES, stored.length - 1 - Integer.BYTES);
+            byte[] raw = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int n = inflater.inflate(raw, offset, length - offset);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalStateException("Truncated message content");
+                }
+                offset += n;
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt message content", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Thread CPU time, so the timers show codec cost rather than scheduling delays
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private static Counter writeCounter(MeterRegistry registry, String format) {
+        return Counter.builder("chat.content.writes")
+                .description("Message contents encoded for storage")
+                .tag("format", format)
+                .register(registry);
+    }
+
+    private static Timer codecTimer(MeterRegistry registry, String operation) {
+        return Timer.builder("chat.content.codec")
+                .description("CPU time spent compressing or decompressing message content")
+                .tag("operation", operation)
+                .register(registry);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.chat.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * A pending timer. SEND rows hold a message to publish at {@code dueAt};
+ * EXPIRE rows point at a stored message to delete at {@code dueAt}. Rows are
+ * removed once handled, so whatever is left is reloaded after a restart.
+ * Several nodes may hold the same row in their timing wheels; the one that
+ * sets {@code claimedBy} delivers it, and a claim left by a node that died
+ * runs out at {@code claimedUntil}.
+ */
+@Entity
+@Data
+@Table(name = "scheduled_messages")
+public class ScheduledMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Kind kind;
+    @Column(nullable = false)
+    private LocalDateTime dueAt;
+
+    // EXPIRE
+    @Column(name = "message_id")
+    private Long messageId;
+
+    // SEND
+    @Column(name = "sender_id")
+    private Long senderId;
+    @Column(name = "receiver_id")
+    private Long receiverId;
+    @Enumerated(EnumType.STRING)
+    private ChatMessage.MessageType messageType;
+    @Convert(converter = MessageBodyConverter.class)
+    @Column(name = "content", length = MessageBodyConverter.MAX_STORED_BYTES)
+    private MessageBody body;
+    @Column(name = "attachment_id")
+    private Long attachmentId;
+    @Convert(converter = ColorConverter.class)
+    private String color;
+    private LocalDateTime expiresAt;
+
+    @Column(name = "claimed_by", length = 36)
+    private String claimedBy;
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+
+    public enum Kind {
+        SEND, EXPIRE
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.chat.overload;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Measures how long client frames wait in the inbound channel's executor queue
+ * and reports it to the {@link OverloadController}. {@code preSend} runs on the
+ * WebSocket thread before the frame is queued, {@code beforeHandle} on the
+ * executor thread that picks it up.
+ */
+@Component
+public class InboundDelayInterceptor implements ExecutorChannelInterceptor {
+
+    private static final String RECEIVED_HEADER = "chatReceivedNanos";
+
+    private final OverloadController overloadController;
+
+    public InboundDelayInterceptor(OverloadController overloadController) {
+        this.overloadController = overloadController;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, MessageHeaderAccessor.class);
+        // Frames from the WebSocket session stay mutable until the channel's last interceptor
+        if (accessor != null && accessor.isMutable()) {
+            accessor.setHeader(RECEIVED_HEADER, System.nanoTime());
+        }
+        return message;
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        if (message.getHeaders().get(RECEIVED_HEADER) instanceof Long received) {
+            overloadController.inboundDelay(System.nanoTime() - received);
+        }
+        return message;
+    }
+}
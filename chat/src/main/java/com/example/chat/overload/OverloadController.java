@@ -0,0 +1,274 @@
+package com.example.chat.overload;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-wide load shedding. Every {@code interval-ms} it samples the inbound
+ * executor queue delay, the primary pool's waiting threads and old generation
+ * occupancy. Each signal has four thresholds, one per step of
+ * {@link OverloadMode}, and the most loaded signal picks the target mode.
+ * Escalation is immediate; recovery goes down one mode at a time, each step
+ * only after the target has stayed lower for {@code recovery-ms}, so a node
+ * at the edge of a threshold does not flap.
+ */
+@Component
+public class OverloadController {
+
+    private static final Logger logger = LoggerFactory.getLogger(OverloadController.class);
+
+    // One threshold per mode above NORMAL
+    private static final int STEPS = OverloadMode.values().length - 1;
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final DataSource dataSource;
+    private final ThreadPoolTaskExecutor inboundExecutor;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long intervalMillis;
+    private final long recoveryNanos;
+    private final long retryAfterSeconds;
+    private final long[] inboundDelayThresholds;
+    private final long[] dbWaitingThresholds;
+    private final double[] heapUsedThresholds;
+    private final MemoryPoolMXBean oldGeneration;
+    private final Map<OverloadMode, Counter> shedCounters = new EnumMap<>(OverloadMode.class);
+    private final AtomicLong maxInboundDelayNanos = new AtomicLong();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "overload-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile OverloadMode mode = OverloadMode.NORMAL;
+    private volatile OverloadSignals lastSignals = new OverloadSignals(0, 0, 0);
+    // Guarded by this; nanoTime since the target mode has been below the current one, or -1
+    private long belowSince = -1;
+
+    // The inbound executor is created by the broker configuration, which depends on this bean
+    public OverloadController(ApplicationEventPublisher eventPublisher, DataSource dataSource,
+                              @Lazy @Qualifier("clientInboundChannelExecutor") ThreadPoolTaskExecutor inboundExecutor,
+                              MeterRegistry meterRegistry,
+                              @Value("${chat.overload.enabled:true}") boolean enabled,
+                              @Value("${chat.overload.interval-ms:500}") long intervalMillis,
+                              @Value("${chat.overload.recovery-ms:10000}") long recoveryMillis,
+                              @Value("${chat.overload.retry-after-seconds:5}") long retryAfterSeconds,
+                              @Value("${chat.overload.inbound-delay-ms:200,500,1000,2000}") long[] inboundDelayThresholds,
+                              @Value("${chat.overload.db-waiting-threads:2,5,10,20}") long[] dbWaitingThresholds,
+                              @Value("${chat.overload.heap-used-ratio:0.75,0.85,0.90,0.95}") double[] heapUsedThresholds) {
+        this.eventPublisher = eventPublisher;
+        this.dataSource = dataSource;
+        this.inboundExecutor = inboundExecutor;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.intervalMillis = intervalMillis;
+        this.recoveryNanos = TimeUnit.MILLISECONDS.toNanos(recoveryMillis);
+        this.retryAfterSeconds = retryAfterSeconds;
+        if (inboundDelayThresholds.length != STEPS || dbWaitingThresholds.length != STEPS
+                || heapUsedThresholds.length != STEPS) {
+            throw new IllegalArgumentException("Each chat.overload signal needs " + STEPS + " thresholds");
+        }
+        this.inboundDelayThresholds = inboundDelayThresholds;
+        this.dbWaitingThresholds = dbWaitingThresholds;
+        this.heapUsedThresholds = heapUsedThresholds;
+        this.oldGeneration = findOldGeneration();
+
+        Gauge.builder("chat.overload.mode", () -> mode.ordinal())
+                .description("Current overload mode, 0 = NORMAL up to 4 = REJECT_CONNECTIONS")
+                .register(meterRegistry);
+        Gauge.builder("chat.overload.inbound.delay", () -> lastSignals.inboundDelayMillis())
+                .description("Longest inbound executor queue wait in the last sample")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("chat.overload.db.waiting", () -> lastSignals.dbWaitingThreads())
+                .description("Threads waiting for a primary pool connection at the last sample")
+                .register(meterRegistry);
+        Gauge.builder("chat.overload.heap.used", () -> lastSignals.heapUsedRatio())
+                .description("Old generation occupancy after the last collection, as a ratio")
+                .register(meterRegistry);
+        for (OverloadMode shedMode : OverloadMode.values()) {
+            if (shedMode != OverloadMode.NORMAL) {
+                shedCounters.put(shedMode, Counter.builder("chat.overload.shed")
+                        .description("Work skipped or rejected because of the overload mode")
+                        .tag("mode", shedMode.name().toLowerCase())
+                        .register(meterRegistry));
+            }
+        }
+    }
+
+    // Same pools Micrometer treats as long-lived; the young generation is always mostly full
+    private static MemoryPoolMXBean findOldGeneration() {
+        List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+        for (MemoryPoolMXBean pool : pools) {
+            String name = pool.getName();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()
+                    && (name.endsWith("Old Gen") || name.endsWith("Tenured Gen") || name.equals("ZHeap")
+                    || name.equals("ZGC Old Generation") || name.equals("Shenandoah"))) {
+                return pool;
+            }
+        }
+        return null;
+    }
+
+    // Sampling reads the inbound executor, which only exists once the context is up
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            sampler.scheduleWithFixedDelay(this::sample, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        sampler.shutdownNow();
+    }
+
+    public OverloadMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Call where work would be skipped in {@code shedMode}.
+     *
+     * @return {@code true} if the current mode includes {@code shedMode} and the work should be skipped
+     */
+    public boolean shed(OverloadMode shedMode) {
+        if (!mode.isAtLeast(shedMode)) {
+            return false;
+        }
+        shedCounters.get(shedMode).increment();
+        return true;
+    }
+
+    /**
+     * Seconds a rejected client should wait, with jitter so rejected clients do
+     * not all come back in the same second.
+     */
+    public long retryAfterSeconds() {
+        return retryAfterSeconds + ThreadLocalRandom.current().nextLong(retryAfterSeconds + 1);
+    }
+
+    void inboundDelay(long nanos) {
+        maxInboundDelayNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private void sample() {
+        try {
+            update(readSignals(), System.nanoTime());
+        } catch (Exception e) {
+            logger.warn("Overload sample failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private OverloadSignals readSignals() {
+        long delayMillis = TimeUnit.NANOSECONDS.toMillis(maxInboundDelayNanos.getAndSet(0));
+        // Nothing handled while frames are queued means the executor is stuck, not idle
+        if (delayMillis == 0 && inboundExecutor.getQueueSize() > 0) {
+            delayMillis = lastSignals.inboundDelayMillis();
+        }
+        return new OverloadSignals(delayMillis, dbWaitingThreads(), heapUsedRatio());
+    }
+
+    private int dbWaitingThreads() {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+                // null until the pool has started
+                return pool != null ? pool.getThreadsAwaitingConnection() : 0;
+            }
+        } catch (Exception e) {
+            logger.debug("Could not read the connection pool: {}", e.getMessage());
+        }
+        return 0;
+    }
+
+    private double heapUsedRatio() {
+        MemoryUsage usage = oldGeneration != null ? oldGeneration.getCollectionUsage() : null;
+        if (usage == null) {
+            usage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        }
+        long max = usage.getMax() > 0 ? usage.getMax() : Runtime.getRuntime().maxMemory();
+        return (double) usage.getUsed() / max;
+    }
+
+    synchronized void update(OverloadSignals signals, long now) {
+        lastSignals = signals;
+        int target = Math.max(level(signals.inboundDelayMillis(), inboundDelayThresholds),
+                Math.max(level(signals.dbWaitingThreads(), dbWaitingThresholds),
+                        level(signals.heapUsedRatio(), heapUsedThresholds)));
+        int current = mode.ordinal();
+        if (target > current) {
+            belowSince = -1;
+            transition(OverloadMode.values()[target], signals);
+        } else if (target == current) {
+            belowSince = -1;
+        } else if (belowSince < 0) {
+            belowSince = now;
+        } else if (now - belowSince >= recoveryNanos) {
+            // the next step down needs another full recovery period
+            belowSince = now;
+            transition(OverloadMode.values()[current - 1], signals);
+        }
+    }
+
+    private static int level(long value, long[] thresholds) {
+        int level = 0;
+        while (level < thresholds.length && value >= thresholds[level]) {
+            level++;
+        }
+        return level;
+    }
+
+    private static int level(double value, double[] thresholds) {
+        int level = 0;
+        while (level < thresholds.length && value >= thresholds[level]) {
+            level++;
+        }
+        return level;
+    }
+
+    private void transition(OverloadMode to, OverloadSignals signals) {
+        OverloadMode from = mode;
+        mode = to;
+        Counter.builder("chat.overload.transitions")
+                .description("Overload mode changes")
+                .tag("from", from.name().toLowerCase())
+                .tag("to", to.name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+        if (to.ordinal() > from.ordinal()) {
+            logger.warn("Overload mode {} -> {} ({})", from, to, signals);
+        } else {
+            logger.info("Overload mode {} -> {} ({})", from, to, signals);
+        }
+        eventPublisher.publishEvent(new OverloadModeChangedEvent(from, to));
+    }
+}
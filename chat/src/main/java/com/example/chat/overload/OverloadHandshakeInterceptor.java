@@ -0,0 +1,41 @@
+package com.example.chat.overload;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/**
+ * Turns new WebSocket handshakes away with a 503 and a Retry-After while the
+ * node is in {@link OverloadMode#REJECT_CONNECTIONS}. Open sessions are left alone.
+ */
+@Component
+public class OverloadHandshakeInterceptor implements HandshakeInterceptor {
+
+    private final OverloadController overloadController;
+
+    public OverloadHandshakeInterceptor(OverloadController overloadController) {
+        this.overloadController = overloadController;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler,
+                                   Map<String, Object> attributes) {
+        if (!overloadController.shed(OverloadMode.REJECT_CONNECTIONS)) {
+            return true;
+        }
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(overloadController.retryAfterSeconds()));
+        return false;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler,
+                               Exception exception) {
+    }
+}
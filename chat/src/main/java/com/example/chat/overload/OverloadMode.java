@@ -0,0 +1,21 @@
+package com.example.chat.overload;
+
+/**
+ * Degradation steps, mildest first. Each mode keeps every restriction of the
+ * modes before it.
+ */
+public enum OverloadMode {
+    NORMAL,
+    // typing indicators are dropped instead of broadcast
+    SHED_TYPING,
+    // JOIN messages are not stored and online-flag writes are held back until recovery
+    SKIP_PRESENCE_PERSISTENCE,
+    // history is only answered from the client's copy (304) or the server's HistoryCache; anything else gets a 503
+    CACHE_ONLY_HISTORY,
+    // new WebSocket handshakes get a 503 with Retry-After
+    REJECT_CONNECTIONS;
+
+    public boolean isAtLeast(OverloadMode mode) {
+        return ordinal() >= mode.ordinal();
+    }
+}
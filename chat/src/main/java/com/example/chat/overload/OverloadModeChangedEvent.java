@@ -0,0 +1,7 @@
+package com.example.chat.overload;
+
+/**
+ * Published on the overload sampler thread after every mode change.
+ */
+public record OverloadModeChangedEvent(OverloadMode from, OverloadMode to) {
+}
@@ -0,0 +1,11 @@
+package com.example.chat.overload;
+
+/**
+ * One sample of the load figures the {@link OverloadController} acts on.
+ *
+ * @param inboundDelayMillis longest wait of a STOMP frame in the inbound executor queue since the last sample
+ * @param dbWaitingThreads   threads blocked waiting for a connection from the primary pool
+ * @param heapUsedRatio      old generation occupancy after the last collection, 0 to 1
+ */
+record OverloadSignals(long inboundDelayMillis, int dbWaitingThreads, double heapUsedRatio) {
+}
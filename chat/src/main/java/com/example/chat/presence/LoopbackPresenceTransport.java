@@ -0,0 +1,49 @@
+package com.example.chat.presence;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-JVM transport: digests are handed synchronously to every other member of
+ * the same {@link Hub}. A single-node deployment uses a hub of one.
+ */
+public class LoopbackPresenceTransport implements PresenceTransport {
+
+    private final Hub hub;
+    private volatile Consumer<PresenceDigest> listener = digest -> { };
+
+    private LoopbackPresenceTransport(Hub hub) {
+        this.hub = hub;
+    }
+
+    @Override
+    public void publish(PresenceDigest digest) {
+        for (LoopbackPresenceTransport member : hub.members) {
+            if (member != this) {
+                member.listener.accept(digest);
+            }
+        }
+    }
+
+    @Override
+    public void setListener(Consumer<PresenceDigest> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void close() {
+        hub.members.remove(this);
+    }
+
+    public static final class Hub {
+
+        private final List<LoopbackPresenceTransport> members = new CopyOnWriteArrayList<>();
+
+        public LoopbackPresenceTransport join() {
+            LoopbackPresenceTransport transport = new LoopbackPresenceTransport(this);
+            members.add(transport);
+            return transport;
+        }
+    }
+}
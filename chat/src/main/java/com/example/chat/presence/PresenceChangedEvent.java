@@ -0,0 +1,7 @@
+package com.example.chat.presence;
+
+/**
+ * Published when a user comes online on the first node or goes offline on the last one.
+ */
+public record PresenceChangedEvent(String username, boolean online) {
+}
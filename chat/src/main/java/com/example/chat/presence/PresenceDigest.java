@@ -0,0 +1,11 @@
+package com.example.chat.presence;
+
+import java.util.Map;
+
+/**
+ * One node's row of the presence map: its open STOMP sessions per user. Only the
+ * owning node writes its row and bumps {@code version} on every change, so peers
+ * merge by keeping the highest version they have seen for each node.
+ */
+public record PresenceDigest(String nodeId, long version, Map<String, Integer> sessions) {
+}
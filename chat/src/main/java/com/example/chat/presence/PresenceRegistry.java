@@ -0,0 +1,262 @@
+package com.example.chat.presence;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cluster-wide view of who is connected. Every node owns one row (its STOMP
+ * sessions per user) and replicates it to its peers over a
+ * {@link PresenceTransport}; a user is online while any live row counts a session
+ * for them, so a disconnect on one node cannot hide a session on another. Rows
+ * are leases: each node republishes its row every heartbeat and a peer's row is
+ * dropped once it has not been heard from for {@code lease-ms}. Reads only look
+ * at a per-user count of the rows that list the user, kept up to date as rows
+ * change, and never touch the network or database.
+ */
+@Service
+public class PresenceRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceRegistry.class);
+
+    private final PresenceTransport transport;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String nodeId;
+    private final long heartbeatMillis;
+    private final long leaseNanos;
+    private final Counter digestsSent;
+    private final Counter digestsReceived;
+    private final Counter leasesExpired;
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "presence-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // This node's row; guarded by this
+    private final Map<String, String> localSessions = new HashMap<>();
+    private final Map<String, Integer> localCounts = new HashMap<>();
+    // Seeded from the clock so a restart under a fixed node-id is not ignored as stale by peers
+    private long localVersion = System.currentTimeMillis() * 1000;
+
+    private final Map<String, RemoteRow> remoteRows = new ConcurrentHashMap<>();
+    // username -> number of rows (this node's included) with a session for the user; written under this
+    private final Map<String, Integer> rowsPerUser = new ConcurrentHashMap<>();
+    // Bumped whenever a user comes online or goes offline
+    private final AtomicLong membershipVersion = new AtomicLong();
+
+    public PresenceRegistry(PresenceTransport transport, ApplicationEventPublisher eventPublisher,
+                            MeterRegistry meterRegistry,
+                            @Value("${chat.presence.node-id:}") String nodeId,
+                            @Value("${chat.presence.heartbeat-ms:1000}") long heartbeatMillis,
+                            @Value("${chat.presence.lease-ms:5000}") long leaseMillis) {
+        this.transport = transport;
+        this.eventPublisher = eventPublisher;
+        this.nodeId = StringUtils.hasText(nodeId) ? nodeId : UUID.randomUUID().toString();
+        this.heartbeatMillis = heartbeatMillis;
+        this.leaseNanos = TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+        this.digestsSent = digestCounter(meterRegistry, "sent");
+        this.digestsReceived = digestCounter(meterRegistry, "received");
+        this.leasesExpired = Counter.builder("chat.presence.leases.expired")
+                .description("Peer rows dropped after their lease ran out")
+                .register(meterRegistry);
+        Gauge.builder("chat.presence.online", rowsPerUser, Map::size)
+                .description("Users with at least one session on any live node")
+                .register(meterRegistry);
+        Gauge.builder("chat.presence.nodes", remoteRows, rows -> rows.size() + 1)
+                .description("Nodes contributing to the presence map, including this one")
+                .register(meterRegistry);
+    }
+
+    private static Counter digestCounter(MeterRegistry meterRegistry, String direction) {
+        return Counter.builder("chat.presence.digests")
+                .description("Presence rows exchanged with peer nodes")
+                .tag("direction", direction)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        transport.setListener(this::receive);
+        heartbeat.scheduleWithFixedDelay(this::tick, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        logger.info("Presence registry started as node {}", nodeId);
+    }
+
+    // Leave with an empty row so peers drop our users now instead of when the lease runs out
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        synchronized (this) {
+            localSessions.clear();
+            localCounts.keySet().forEach(this::rowRemoved);
+            localCounts.clear();
+            localVersion++;
+        }
+        publishLocalRow();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public boolean isOnline(String username) {
+        return username != null && rowsPerUser.containsKey(username);
+    }
+
+    public List<String> getOnlineUsers() {
+        return List.copyOf(rowsPerUser.keySet());
+    }
+
+    public long getMembershipVersion() {
+        return membershipVersion.get();
+    }
+
+    /**
+     * Counts a STOMP session for the user on this node. Repeated calls for the same
+     * session are ignored.
+     */
+    public void sessionOpened(String sessionId, String username) {
+        synchronized (this) {
+            if (localSessions.putIfAbsent(sessionId, username) != null) {
+                return;
+            }
+            if (localCounts.merge(username, 1, Integer::sum) == 1) {
+                rowAdded(username);
+            }
+            localVersion++;
+        }
+        publishLocalRow();
+    }
+
+    /**
+     * Removes a session counted by {@link #sessionOpened}.
+     *
+     * @return the session's user, or {@code null} if the session was never counted
+     */
+    public String sessionClosed(String sessionId) {
+        String username;
+        synchronized (this) {
+            username = localSessions.remove(sessionId);
+            if (username == null) {
+                return null;
+            }
+            if (localCounts.computeIfPresent(username, (user, count) -> count > 1 ? count - 1 : null) == null) {
+                rowRemoved(username);
+            }
+            localVersion++;
+        }
+        publishLocalRow();
+        return username;
+    }
+
+    void receive(PresenceDigest digest) {
+        if (nodeId.equals(digest.nodeId())) {
+            return;
+        }
+        digestsReceived.increment();
+        long now = System.nanoTime();
+        synchronized (this) {
+            RemoteRow current = remoteRows.get(digest.nodeId());
+            if (current != null && current.digest.version() > digest.version()) {
+                return;
+            }
+            remoteRows.put(digest.nodeId(), new RemoteRow(digest, now + leaseNanos));
+            if (current == null) {
+                listedUsers(digest).forEach(this::rowAdded);
+            } else if (current.digest.version() != digest.version()) {
+                Set<String> before = listedUsers(current.digest);
+                Set<String> after = listedUsers(digest);
+                for (String username : after) {
+                    if (!before.contains(username)) {
+                        rowAdded(username);
+                    }
+                }
+                for (String username : before) {
+                    if (!after.contains(username)) {
+                        rowRemoved(username);
+                    }
+                }
+            }
+        }
+    }
+
+    void tick() {
+        try {
+            expireLeases(System.nanoTime());
+            publishLocalRow();
+        } catch (Exception e) {
+            logger.warn("Presence heartbeat failed: {}", e.getMessage(), e);
+        }
+    }
+
+    void expireLeases(long now) {
+        synchronized (this) {
+            remoteRows.values().removeIf(row -> {
+                if (row.expiresAt - now > 0) {
+                    return false;
+                }
+                logger.info("Presence lease of node {} expired", row.digest.nodeId());
+                leasesExpired.increment();
+                listedUsers(row.digest).forEach(this::rowRemoved);
+                return true;
+            });
+        }
+    }
+
+    private void publishLocalRow() {
+        PresenceDigest digest;
+        synchronized (this) {
+            digest = new PresenceDigest(nodeId, localVersion, Map.copyOf(localCounts));
+        }
+        transport.publish(digest);
+        digestsSent.increment();
+    }
+
+    private static Set<String> listedUsers(PresenceDigest digest) {
+        Set<String> users = new HashSet<>();
+        digest.sessions().forEach((username, count) -> {
+            if (count > 0) {
+                users.add(username);
+            }
+        });
+        return users;
+    }
+
+    // Callers hold the lock, so events go out in the order the transitions happened
+    private void rowAdded(String username) {
+        if (rowsPerUser.merge(username, 1, Integer::sum) == 1) {
+            membershipVersion.incrementAndGet();
+            eventPublisher.publishEvent(new PresenceChangedEvent(username, true));
+        }
+    }
+
+    private void rowRemoved(String username) {
+        if (rowsPerUser.computeIfPresent(username, (user, rows) -> rows > 1 ? rows - 1 : null) == null) {
+            membershipVersion.incrementAndGet();
+            eventPublisher.publishEvent(new PresenceChangedEvent(username, false));
+        }
+    }
+
+    private record RemoteRow(PresenceDigest digest, long expiresAt) {
+    }
+}
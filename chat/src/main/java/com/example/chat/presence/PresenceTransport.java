@@ -0,0 +1,18 @@
+package com.example.chat.presence;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries presence digests between nodes. Delivery may be lossy and unordered;
+ * the registry republishes its row every heartbeat and ignores stale versions.
+ */
+public interface PresenceTransport extends AutoCloseable {
+
+    void publish(PresenceDigest digest);
+
+    void setListener(Consumer<PresenceDigest> listener);
+
+    @Override
+    default void close() {
+    }
+}
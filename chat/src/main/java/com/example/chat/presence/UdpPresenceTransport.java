@@ -0,0 +1,249 @@
+package com.example.chat.presence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Sends each digest to a fixed list of peers and receives on a bound port. A
+ * row that does not fit in one datagram is split into parts of whole entries;
+ * the receiver keeps the parts of the newest version per node and hands the
+ * row on once all of them are in, so a lost part only delays the row until the
+ * next heartbeat. Datagrams are only accepted from the configured peers. Their
+ * source address is easy to forge, so the port should still only be reachable
+ * from inside the cluster.
+ */
+public class UdpPresenceTransport implements PresenceTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(UdpPresenceTransport.class);
+
+    private static final int MAGIC = 0x50524553; // "PRES"
+    static final int MAX_DATAGRAM_BYTES = 65_507;
+    // Caps what one peer can make the receiver hold: this many datagrams per node
+    static final int MAX_PARTS = 256;
+    // writeUTF length prefix and the session count
+    private static final int MIN_ENTRY_BYTES = 2 + 4;
+    // Room for a burst of parts; the kernel may cap it at net.core.rmem_max
+    private static final int RECEIVE_BUFFER_BYTES = 4 * 1024 * 1024;
+
+    private final DatagramChannel channel;
+    private final List<InetSocketAddress> peers;
+    private final Set<InetSocketAddress> allowedSources;
+    private final Thread receiver;
+    // Only touched by the receiver thread
+    private final Map<String, PartialRow> partialRows = new HashMap<>();
+    private volatile Consumer<PresenceDigest> listener = digest -> { };
+
+    public UdpPresenceTransport(InetSocketAddress bindAddress, List<InetSocketAddress> peers) throws IOException {
+        this.channel = DatagramChannel.open()
+                .setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_BYTES)
+                .bind(bindAddress);
+        this.peers = List.copyOf(peers);
+        this.allowedSources = Set.copyOf(peers);
+        this.receiver = new Thread(this::receiveLoop, "presence-udp");
+        this.receiver.setDaemon(true);
+        this.receiver.start();
+        logger.info("Presence UDP transport on {} with peers {}", channel.getLocalAddress(), this.peers);
+    }
+
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) channel.getLocalAddress();
+    }
+
+    @Override
+    public void publish(PresenceDigest digest) {
+        List<byte[]> datagrams;
+        try {
+            datagrams = encode(digest);
+        } catch (IOException e) {
+            logger.error("Could not encode presence digest for {} users, peers will expire this node's row: {}",
+                    digest.sessions().size(), e.getMessage());
+            return;
+        }
+        for (InetSocketAddress peer : peers) {
+            for (byte[] datagram : datagrams) {
+                try {
+                    channel.send(ByteBuffer.wrap(datagram), peer);
+                } catch (IOException e) {
+                    logger.debug("Could not send presence digest to {}: {}", peer, e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void setListener(Consumer<PresenceDigest> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Error closing presence channel: {}", e.getMessage());
+        }
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM_BYTES);
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                SocketAddress source = channel.receive(buffer);
+                if (!allowedSources.contains(source)) {
+                    logger.debug("Ignoring presence datagram from {}, not a configured peer", source);
+                    continue;
+                }
+                Part part = decode(buffer.array(), buffer.position());
+                PresenceDigest digest = part != null ? assemble(part) : null;
+                if (digest != null) {
+                    listener.accept(digest);
+                }
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (Exception e) {
+                logger.warn("Dropping malformed presence datagram: {}", e.getMessage());
+            }
+        }
+    }
+
+    private PresenceDigest assemble(Part part) {
+        PartialRow row = partialRows.get(part.nodeId());
+        if (row != null && row.version > part.version()) {
+            return null;
+        }
+        if (row == null || row.version != part.version() || row.parts.length != part.count()) {
+            row = new PartialRow(part.version(), part.count());
+            partialRows.put(part.nodeId(), row);
+        }
+        if (row.parts[part.index()] == null) {
+            row.parts[part.index()] = part.sessions();
+            row.received++;
+        }
+        if (row.received < row.parts.length) {
+            return null;
+        }
+        partialRows.remove(part.nodeId());
+        if (row.parts.length == 1) {
+            return new PresenceDigest(part.nodeId(), part.version(), row.parts[0]);
+        }
+        Map<String, Integer> sessions = new HashMap<>();
+        for (Map<String, Integer> rowPart : row.parts) {
+            sessions.putAll(rowPart);
+        }
+        return new PresenceDigest(part.nodeId(), part.version(), sessions);
+    }
+
+    static List<byte[]> encode(PresenceDigest digest) throws IOException {
+        // magic, node id, version, part index, part count, entry count
+        int headerBytes = 4 + 2 + utfLength(digest.nodeId()) + 8 + 4 + 4 + 4;
+        List<List<Map.Entry<String, Integer>>> parts = new ArrayList<>();
+        List<Map.Entry<String, Integer>> part = new ArrayList<>();
+        int partBytes = headerBytes;
+        for (Map.Entry<String, Integer> entry : digest.sessions().entrySet()) {
+            int entryBytes = 2 + utfLength(entry.getKey()) + 4;
+            if (headerBytes + entryBytes > MAX_DATAGRAM_BYTES) {
+                throw new IOException("User name of " + entryBytes + " bytes does not fit in a datagram");
+            }
+            if (partBytes + entryBytes > MAX_DATAGRAM_BYTES) {
+                parts.add(part);
+                part = new ArrayList<>();
+                partBytes = headerBytes;
+            }
+            part.add(entry);
+            partBytes += entryBytes;
+        }
+        // An empty row is still sent, as one part
+        parts.add(part);
+        if (parts.size() > MAX_PARTS) {
+            throw new IOException("Row needs " + parts.size() + " datagrams, peers accept at most " + MAX_PARTS);
+        }
+
+        List<byte[]> datagrams = new ArrayList<>(parts.size());
+        for (int index = 0; index < parts.size(); index++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(headerBytes + parts.get(index).size() * 24);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeUTF(digest.nodeId());
+            out.writeLong(digest.version());
+            out.writeInt(index);
+            out.writeInt(parts.size());
+            out.writeInt(parts.get(index).size());
+            for (Map.Entry<String, Integer> entry : parts.get(index)) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+            out.flush();
+            datagrams.add(bytes.toByteArray());
+        }
+        return datagrams;
+    }
+
+    static Part decode(byte[] datagram, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(datagram, 0, length));
+        if (length < 4 || in.readInt() != MAGIC) {
+            return null;
+        }
+        String nodeId = in.readUTF();
+        long version = in.readLong();
+        int index = in.readInt();
+        int count = in.readInt();
+        if (count < 1 || count > MAX_PARTS || index < 0 || index >= count) {
+            throw new IOException("Part " + index + " of " + count + " is out of range");
+        }
+        int size = in.readInt();
+        // The count is not trusted for sizing anything beyond what the datagram can hold
+        if (size < 0 || size > in.available() / MIN_ENTRY_BYTES) {
+            throw new IOException(size + " entries do not fit in " + length + " bytes");
+        }
+        Map<String, Integer> sessions = new HashMap<>(Math.max(16, size * 2));
+        for (int i = 0; i < size; i++) {
+            sessions.put(in.readUTF(), in.readInt());
+        }
+        return new Part(nodeId, version, index, count, sessions);
+    }
+
+    // Bytes writeUTF uses for the characters of value, without the length prefix
+    private static int utfLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        return length;
+    }
+
+    record Part(String nodeId, long version, int index, int count, Map<String, Integer> sessions) {
+    }
+
+    private static final class PartialRow {
+
+        private final long version;
+        private final Map<String, Integer>[] parts;
+        private int received;
+
+        @SuppressWarnings("unchecked")
+        PartialRow(long version, int count) {
+            this.version = version;
+            this.parts = new Map[count];
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.chat.repo;
+
+import com.example.chat.model.Attachment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+@Transactional(readOnly = true)
+public interface AttachmentRepo extends JpaRepository<Attachment, Long> {
+}
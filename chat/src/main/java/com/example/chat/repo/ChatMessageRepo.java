@@ -5,14 +5,24 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
+@Transactional(readOnly = true)
 public interface ChatMessageRepo extends JpaRepository<ChatMessage, Long> {
 
-    @Query("SELECT cm FROM ChatMessage cm WHERE cm.messageType = 'PRIVATE_MESSAGE' AND ((cm.sender = :user1 AND cm.receiver = :user2) OR (cm.sender = :user2 AND cm.receiver = :user1)) ORDER BY cm.timestamp ASC")
-    List<ChatMessage> findPrivateMessagesBetweenTwoUsers(@Param("user1") String user1, @Param("user2") String user2);
+    // conversationKey is only set on private messages, see ChatMessage.conversationKey
+    @Query("SELECT cm FROM ChatMessage cm WHERE cm.conversationKey = :conversationKey ORDER BY cm.timestamp ASC")
+    List<ChatMessage> findPrivateConversation(@Param("conversationKey") long conversationKey);
 
+    Optional<ChatMessage> findFirstByConversationKeyOrderByIdDesc(long conversationKey);
+
+    // Public messages have no receiver, so everyone may see their attachments
+    @Query("SELECT COUNT(cm) > 0 FROM ChatMessage cm WHERE cm.attachmentId = :attachmentId"
+            + " AND (cm.receiverId IS NULL OR cm.senderId = :userId OR cm.receiverId = :userId)")
+    boolean isAttachmentVisibleTo(@Param("attachmentId") long attachmentId, @Param("userId") long userId);
 
 }
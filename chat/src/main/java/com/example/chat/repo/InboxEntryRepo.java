@@ -0,0 +1,55 @@
+package com.example.chat.repo;
+
+import com.example.chat.model.InboxEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Transactional(readOnly = true)
+public interface InboxEntryRepo extends JpaRepository<InboxEntry, Long> {
+
+    List<InboxEntry> findByOwnerId(Long ownerId);
+
+    // Matches nothing if the entry already points at this or a later message
+    @Transactional
+    @Modifying
+    @Query("UPDATE InboxEntry e SET e.lastMessageId = :messageId, e.lastPreview = :preview, e.lastTimestamp = :timestamp, "
+            + "e.unreadCount = e.unreadCount + :unreadIncrement WHERE e.ownerId = :ownerId AND e.partnerId = :partnerId "
+            + "AND e.lastMessageId < :messageId")
+    int advance(@Param("ownerId") Long ownerId, @Param("partnerId") Long partnerId, @Param("messageId") Long messageId,
+                @Param("preview") String preview, @Param("timestamp") LocalDateTime timestamp,
+                @Param("unreadIncrement") int unreadIncrement);
+
+    // Moves an entry off a deleted message; matches nothing if it has moved on already
+    @Transactional
+    @Modifying
+    @Query("UPDATE InboxEntry e SET e.lastMessageId = :messageId, e.lastPreview = :preview, e.lastTimestamp = :timestamp "
+            + "WHERE e.ownerId = :ownerId AND e.partnerId = :partnerId AND e.lastMessageId = :deletedId")
+    int replaceLast(@Param("ownerId") Long ownerId, @Param("partnerId") Long partnerId,
+                    @Param("deletedId") Long deletedId, @Param("messageId") Long messageId,
+                    @Param("preview") String preview, @Param("timestamp") LocalDateTime timestamp);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM InboxEntry e WHERE e.ownerId = :ownerId AND e.partnerId = :partnerId "
+            + "AND e.lastMessageId = :deletedId")
+    int deleteIfLast(@Param("ownerId") Long ownerId, @Param("partnerId") Long partnerId,
+                     @Param("deletedId") Long deletedId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE InboxEntry e SET e.unreadCount = e.unreadCount + :unreadIncrement "
+            + "WHERE e.ownerId = :ownerId AND e.partnerId = :partnerId")
+    int addUnread(@Param("ownerId") Long ownerId, @Param("partnerId") Long partnerId,
+                  @Param("unreadIncrement") int unreadIncrement);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE InboxEntry e SET e.unreadCount = 0 WHERE e.ownerId = :ownerId AND e.partnerId = :partnerId")
+    int markRead(@Param("ownerId") Long ownerId, @Param("partnerId") Long partnerId);
+}
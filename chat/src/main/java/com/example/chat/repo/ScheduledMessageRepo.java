@@ -0,0 +1,38 @@
+package com.example.chat.repo;
+
+import com.example.chat.model.ScheduledMessage;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+@Transactional(readOnly = true)
+public interface ScheduledMessageRepo extends JpaRepository<ScheduledMessage, Long> {
+
+    // Only what the timing wheel needs, a page at a time, so recovery does not load message bodies
+    @Query("SELECT s.id, s.dueAt FROM ScheduledMessage s WHERE s.id > :afterId ORDER BY s.id")
+    List<Object[]> findPendingAfter(@Param("afterId") long afterId, Limit limit);
+
+    @Query("SELECT COALESCE(MAX(s.id), 0) FROM ScheduledMessage s")
+    long findMaxId();
+
+    // Matches nothing if the row is gone or another node's claim has not run out yet
+    @Transactional
+    @Modifying
+    @Query("UPDATE ScheduledMessage s SET s.claimedBy = :node, s.claimedUntil = :until WHERE s.id = :id "
+            + "AND (s.claimedUntil IS NULL OR s.claimedUntil < :now OR s.claimedBy = :node)")
+    int claim(@Param("id") long id, @Param("node") String node, @Param("now") LocalDateTime now,
+              @Param("until") LocalDateTime until);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ScheduledMessage s SET s.claimedBy = NULL, s.claimedUntil = NULL WHERE s.id = :id AND s.claimedBy = :node")
+    int release(@Param("id") long id, @Param("node") String node);
+}
@@ -1,15 +1,16 @@
 package com.example.chat.repo;
 
 import com.example.chat.model.User;
-import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
 
+@Transactional(readOnly = true)
 public interface UserRepo extends JpaRepository<User, Long> {
     public boolean existsByUsername(String username);
     public Optional<User> findByUsername(String username);
@@ -21,4 +22,7 @@ public interface UserRepo extends JpaRepository<User, Long> {
 
 
     List<User> findAllByIsOnline(boolean isOnline);
+
+    @Query("SELECT u.username, u.isOnline FROM User u")
+    List<Object[]> findAllUsernamesAndOnlineStatus();
 }
@@ -0,0 +1,177 @@
+package com.example.chat.scheduler;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel for a large number of long-keyed timers. Each timer is
+ * one small node in a bucket list; scheduling is a queue offer, and the single
+ * worker thread only touches the bucket of the current tick, so the cost per
+ * tick does not grow with the number of pending timers. Timers fire at most
+ * one tick late.
+ *
+ * <p>The expiry callback runs on the worker thread and must hand real work
+ * off to another executor.
+ */
+public class HashedTimingWheel implements AutoCloseable {
+
+    /**
+     * Called for each timer that is due, with how late it fired.
+     */
+    @FunctionalInterface
+    public interface ExpiryHandler {
+        void expired(long id, long lateNanos);
+    }
+
+    // Upper bound on newly scheduled timers moved into the wheel per tick
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] wheel;
+    private final ExpiryHandler handler;
+    private final Queue<Node> scheduled = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pending = new AtomicLong();
+    private final long startNanos;
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick;
+
+    public HashedTimingWheel(long tickDuration, TimeUnit unit, int wheelSize, String threadName, ExpiryHandler handler) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheelSize must be a power of two: " + wheelSize);
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.mask = wheelSize - 1;
+        this.wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.handler = handler;
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public void schedule(long id, long delay, TimeUnit unit) {
+        if (!running) {
+            throw new IllegalStateException("Timing wheel is stopped");
+        }
+        long deadline = System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay));
+        pending.incrementAndGet();
+        scheduled.offer(new Node(id, deadline));
+    }
+
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            long tickDeadline = tickNanos * (tick + 1);
+            long sleep;
+            while (running && (sleep = tickDeadline - (System.nanoTime() - startNanos)) > 0) {
+                LockSupport.parkNanos(this, sleep);
+            }
+            if (!running) {
+                return;
+            }
+            transferScheduled();
+            expire(wheel[(int) (tick & mask)], tickDeadline);
+            tick++;
+        }
+    }
+
+    private void transferScheduled() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Node node = scheduled.poll();
+            if (node == null) {
+                return;
+            }
+            long calculated = node.deadline / tickNanos;
+            node.remainingRounds = (calculated - tick) / wheel.length;
+            // Already overdue timers go into the current tick's bucket
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(node);
+        }
+    }
+
+    private void expire(Bucket bucket, long tickDeadline) {
+        Node node = bucket.head;
+        while (node != null) {
+            Node next = node.next;
+            if (node.remainingRounds <= 0 && node.deadline <= tickDeadline) {
+                bucket.remove(node);
+                pending.decrementAndGet();
+                long late = System.nanoTime() - startNanos - node.deadline;
+                try {
+                    handler.expired(node.id, Math.max(0, late));
+                } catch (RuntimeException e) {
+                    // keep the wheel turning; the handler is responsible for its own errors
+                }
+            } else {
+                node.remainingRounds--;
+            }
+            node = next;
+        }
+    }
+
+    private static final class Node {
+        final long id;
+        final long deadline;
+        long remainingRounds;
+        Node prev;
+        Node next;
+
+        Node(long id, long deadline) {
+            this.id = id;
+            this.deadline = deadline;
+        }
+    }
+
+    // Only touched by the worker thread
+    private static final class Bucket {
+        Node head;
+        Node tail;
+
+        void add(Node node) {
+            if (head == null) {
+                head = tail = node;
+            } else {
+                tail.next = node;
+                node.prev = tail;
+                tail = node;
+            }
+        }
+
+        void remove(Node node) {
+            if (node.prev != null) {
+                node.prev.next = node.next;
+            } else {
+                head = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            } else {
+                tail = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.chat.scheduler;
+
+import com.example.chat.model.ChatMessage;
+import com.example.chat.model.MessageBody;
+import com.example.chat.model.ScheduledMessage;
+import com.example.chat.repo.ScheduledMessageRepo;
+import com.example.chat.service.ReadYourWrites;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduled sends and self-destructing messages. Each pending item is a row in
+ * {@code scheduled_messages} plus an id in a {@link HashedTimingWheel}; nothing
+ * polls the database. When an item is due it is loaded, published as a
+ * {@link ScheduledMessageDueEvent} for {@code ChatController} to deliver, and
+ * deleted once that succeeded. A failed delivery goes back on the wheel with
+ * exponential backoff; after {@code max-attempts} the row is left for
+ * {@link #recover()} on the next start.
+ * <p>
+ * Nodes sharing the database all recover every row, so a row is claimed in the
+ * database before it is published and only the claiming node delivers it. A
+ * node that loses the claim looks again once the claim has run out, and takes
+ * the row over if the claiming node died before deleting it.
+ */
+@Service
+public class MessageScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageScheduler.class);
+
+    private static final int RECOVERY_PAGE_SIZE = 10_000;
+
+    private final ScheduledMessageRepo scheduledMessageRepo;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ThreadPoolTaskExecutor deliveryExecutor;
+    private final MeterRegistry meterRegistry;
+    private final ReadYourWrites readYourWrites;
+    private final Timer wheelLateness;
+    private final Timer deliveryLateness;
+    private final Counter sent;
+    private final Counter expired;
+    private final Counter failed;
+    // Failed attempts per row; in memory only, a restart starts over
+    private final Map<Long, Integer> failedAttempts = new ConcurrentHashMap<>();
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Value("${chat.scheduler.tick-ms:100}")
+    private long tickMillis;
+
+    @Value("${chat.scheduler.wheel-size:4096}")
+    private int wheelSize;
+
+    @Value("${chat.scheduler.retry-backoff-ms:1000}")
+    private long retryBackoffMillis;
+
+    @Value("${chat.scheduler.max-retry-backoff-ms:60000}")
+    private long maxRetryBackoffMillis;
+
+    @Value("${chat.scheduler.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${chat.scheduler.claim-ms:30000}")
+    private long claimMillis;
+
+    private HashedTimingWheel wheel;
+    // Rows up to this id existed before startup and are scheduled by recover()
+    private long recoverUpTo;
+
+    public MessageScheduler(ScheduledMessageRepo scheduledMessageRepo, ApplicationEventPublisher eventPublisher,
+                            @Qualifier("schedulerDeliveryExecutor") ThreadPoolTaskExecutor deliveryExecutor,
+                            MeterRegistry meterRegistry, ReadYourWrites readYourWrites) {
+        this.scheduledMessageRepo = scheduledMessageRepo;
+        this.eventPublisher = eventPublisher;
+        this.deliveryExecutor = deliveryExecutor;
+        this.meterRegistry = meterRegistry;
+        this.readYourWrites = readYourWrites;
+        this.wheelLateness = latenessTimer(meterRegistry, "wheel");
+        this.deliveryLateness = latenessTimer(meterRegistry, "delivery");
+        this.sent = handledCounter(meterRegistry, "sent");
+        this.expired = handledCounter(meterRegistry, "expired");
+        this.failed = handledCounter(meterRegistry, "failed");
+    }
+
+    @PostConstruct
+    public void init() {
+        // Scheduler reads go to the primary: a row missing from a lagging replica would be a lost timer
+        recoverUpTo = readYourWrites.readPrimary(scheduledMessageRepo::findMaxId);
+        wheel = new HashedTimingWheel(tickMillis, TimeUnit.MILLISECONDS, wheelSize, "message-scheduler", this::onExpired);
+        Gauge.builder("chat.scheduler.pending", wheel, HashedTimingWheel::getPendingCount)
+                .description("Timers waiting in the timing wheel")
+                .register(meterRegistry);
+        Gauge.builder("chat.scheduler.delivery.queue", deliveryExecutor,
+                        executor -> executor.getThreadPoolExecutor().getQueue().size())
+                .description("Due items waiting for the delivery thread")
+                .register(meterRegistry);
+    }
+
+    // Deliveries need the broker running, so recovered items are only scheduled once the app is up
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        long afterId = 0;
+        int recovered = 0;
+        while (afterId < recoverUpTo) {
+            long pageAfter = afterId;
+            List<Object[]> page = readYourWrites.readPrimary(
+                    () -> scheduledMessageRepo.findPendingAfter(pageAfter, Limit.of(RECOVERY_PAGE_SIZE)));
+            if (page.isEmpty()) {
+                break;
+            }
+            for (Object[] row : page) {
+                long id = (Long) row[0];
+                if (id > recoverUpTo) {
+                    break;
+                }
+                schedule(id, (LocalDateTime) row[1]);
+                afterId = id;
+                recovered++;
+            }
+            if (page.size() < RECOVERY_PAGE_SIZE) {
+                break;
+            }
+        }
+        if (recovered > 0) {
+            logger.info("Recovered {} scheduled messages", recovered);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wheel.close();
+    }
+
+    public ScheduledMessage scheduleSend(ChatMessage chatMessage, LocalDateTime sendAt) {
+        ScheduledMessage scheduledMessage = new ScheduledMessage();
+        scheduledMessage.setKind(ScheduledMessage.Kind.SEND);
+        scheduledMessage.setDueAt(sendAt);
+        scheduledMessage.setSenderId(chatMessage.getSenderId());
+        scheduledMessage.setReceiverId(chatMessage.getReceiverId());
+        scheduledMessage.setMessageType(chatMessage.getMessageType());
+        scheduledMessage.setBody(chatMessage.getContent() != null ? MessageBody.of(chatMessage.getContent()) : null);
+        scheduledMessage.setAttachmentId(chatMessage.getAttachmentId());
+        scheduledMessage.setColor(chatMessage.getColor());
+        scheduledMessage.setExpiresAt(chatMessage.getExpiresAt());
+        ScheduledMessage saved = scheduledMessageRepo.save(scheduledMessage);
+        schedule(saved.getId(), sendAt);
+        return saved;
+    }
+
+    public ScheduledMessage scheduleExpiry(ChatMessage savedMessage) {
+        ScheduledMessage scheduledMessage = new ScheduledMessage();
+        scheduledMessage.setKind(ScheduledMessage.Kind.EXPIRE);
+        scheduledMessage.setDueAt(savedMessage.getExpiresAt());
+        scheduledMessage.setMessageId(savedMessage.getId());
+        ScheduledMessage saved = scheduledMessageRepo.save(scheduledMessage);
+        schedule(saved.getId(), savedMessage.getExpiresAt());
+        return saved;
+    }
+
+    private void schedule(long id, LocalDateTime dueAt) {
+        long delayMillis = Duration.between(LocalDateTime.now(), dueAt).toMillis();
+        wheel.schedule(id, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs on the wheel thread
+    private void onExpired(long id, long lateNanos) {
+        wheelLateness.record(lateNanos, TimeUnit.NANOSECONDS);
+        deliveryExecutor.execute(() -> deliver(id));
+    }
+
+    private void deliver(long id) {
+        LocalDateTime now = LocalDateTime.now();
+        if (scheduledMessageRepo.claim(id, nodeId, now, now.plus(Duration.ofMillis(claimMillis))) == 0) {
+            // Delivered already, or another node holds it; if that node dies the row is ours once its claim runs out
+            if (readYourWrites.readPrimary(() -> scheduledMessageRepo.existsById(id))) {
+                wheel.schedule(id, claimMillis, TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+        ScheduledMessage scheduledMessage = readYourWrites.readPrimary(() -> scheduledMessageRepo.findById(id))
+                .orElse(null);
+        if (scheduledMessage == null) {
+            return;
+        }
+        deliveryLateness.record(Duration.between(scheduledMessage.getDueAt(), LocalDateTime.now()).abs());
+        try {
+            eventPublisher.publishEvent(new ScheduledMessageDueEvent(scheduledMessage));
+        } catch (Exception e) {
+            failed.increment();
+            scheduledMessageRepo.release(id, nodeId);
+            retry(id, e);
+            return;
+        }
+        (scheduledMessage.getKind() == ScheduledMessage.Kind.SEND ? sent : expired).increment();
+        failedAttempts.remove(id);
+        scheduledMessageRepo.deleteById(id);
+    }
+
+    private void retry(long id, Exception cause) {
+        int attempt = failedAttempts.merge(id, 1, Integer::sum);
+        if (attempt >= maxAttempts) {
+            failedAttempts.remove(id);
+            logger.error("Giving up on scheduled message {} after {} attempts, it is retried on the next start: {}",
+                    id, attempt, cause.getMessage(), cause);
+            return;
+        }
+        long backoffMillis = Math.min(retryBackoffMillis << Math.min(attempt - 1, 20), maxRetryBackoffMillis);
+        logger.warn("Error delivering scheduled message {} (attempt {}), retrying in {} ms: {}",
+                id, attempt, backoffMillis, cause.getMessage(), cause);
+        wheel.schedule(id, backoffMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static Timer latenessTimer(MeterRegistry registry, String stage) {
+        return Timer.builder("chat.scheduler.lateness")
+                .description("How long after their due time scheduled items fire (wheel) and are handed over (delivery)")
+                .tag("stage", stage)
+                .register(registry);
+    }
+
+    private static Counter handledCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder("chat.scheduler.handled")
+                .description("Scheduled items taken off the timing wheel")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.chat.scheduler;
+
+import com.example.chat.model.ScheduledMessage;
+
+/**
+ * Published on the delivery executor when a scheduled item is due.
+ */
+public record ScheduledMessageDueEvent(ScheduledMessage scheduledMessage) {
+}
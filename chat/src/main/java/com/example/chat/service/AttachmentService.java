@@ -0,0 +1,385 @@
+package com.example.chat.service;
+
+import com.example.chat.model.Attachment;
+import com.example.chat.repo.AttachmentRepo;
+import com.example.chat.repo.ChatMessageRepo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Chunked uploads into a content-addressed file store. Chunks are streamed
+ * from the request straight into a part file, so memory use does not depend
+ * on file size. The part file's length is the resume offset. After the last
+ * chunk the file is hashed and moved to {@code blobs/<xx>/<sha256>}. If that
+ * blob already exists the part file is dropped and the new attachment points
+ * at the existing one. An upload that receives no chunk for
+ * {@code upload-ttl-ms} is dropped along with its part file; part files left
+ * by a previous run are deleted on startup, since their uploads are gone.
+ */
+@Service
+public class AttachmentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentService.class);
+
+    private static final Set<String> INLINE_CONTENT_TYPES =
+            Set.of("image/png", "image/jpeg", "image/gif", "image/webp", "application/pdf");
+
+    private static final int HASH_BUFFER_BYTES = 64 * 1024;
+
+    private final AttachmentRepo attachmentRepo;
+    private final ChatMessageRepo chatMessageRepo;
+    private final UserDirectory userDirectory;
+    private final ReadYourWrites readYourWrites;
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "attachment-upload-cleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${chat.attachments.store-path:data/attachments}")
+    private String storePath;
+
+    @Value("${chat.attachments.max-size-bytes:104857600}")
+    private long maxSizeBytes;
+
+    @Value("${chat.attachments.upload-ttl-ms:86400000}")
+    private long uploadTtlMillis;
+
+    @Value("${chat.attachments.cleanup-interval-ms:600000}")
+    private long cleanupIntervalMillis;
+
+    private Path uploadDir;
+    private Path blobDir;
+
+    public AttachmentService(AttachmentRepo attachmentRepo, ChatMessageRepo chatMessageRepo,
+                             UserDirectory userDirectory, ReadYourWrites readYourWrites) {
+        this.attachmentRepo = attachmentRepo;
+        this.chatMessageRepo = chatMessageRepo;
+        this.userDirectory = userDirectory;
+        this.readYourWrites = readYourWrites;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path root = Paths.get(storePath).toAbsolutePath();
+        uploadDir = Files.createDirectories(root.resolve("uploads"));
+        blobDir = Files.createDirectories(root.resolve("blobs"));
+        logger.info("Attachment store at {}", root);
+        // Uploads only live in memory, so part files from before the restart cannot be resumed
+        try (Stream<Path> parts = Files.list(uploadDir)) {
+            parts.filter(part -> part.getFileName().toString().endsWith(".part")).forEach(this::deleteQuietly);
+        }
+        cleaner.scheduleWithFixedDelay(() -> removeIdleUploads(System.nanoTime()), cleanupIntervalMillis,
+                cleanupIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        cleaner.shutdownNow();
+    }
+
+    /**
+     * Whether a download may be shown in the browser. Anything that could run script
+     * on this origin, such as HTML or SVG, is only ever offered as a file to save.
+     */
+    public boolean isSafeInline(String contentType) {
+        return contentType != null && INLINE_CONTENT_TYPES.contains(contentType);
+    }
+
+    public Upload startUpload(String username, String fileName, String contentType, long size) {
+        if (size <= 0 || size > maxSizeBytes) {
+            throw new IllegalArgumentException("Attachment size must be between 1 and " + maxSizeBytes + " bytes");
+        }
+        Long uploaderId = userDirectory.idOf(username);
+        if (uploaderId == null) {
+            throw new IllegalArgumentException("User not found: " + username);
+        }
+        Upload upload = new Upload(UUID.randomUUID().toString(), uploaderId, fileName, normalizeContentType(contentType),
+                size);
+        try {
+            Files.createFile(partFile(upload));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        uploads.put(upload.getId(), upload);
+        return upload;
+    }
+
+    public Optional<Upload> findUpload(String uploadId) {
+        return Optional.ofNullable(uploads.get(uploadId));
+    }
+
+    public long getOffset(Upload upload) {
+        try {
+            return Files.size(partFile(upload));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends one chunk at {@code offset}, which has to match the bytes received
+     * so far. Returns the stored attachment once the upload is complete,
+     * otherwise empty.
+     */
+    public Optional<Attachment> appendChunk(Upload upload, long offset, InputStream body) throws IOException {
+        synchronized (upload) {
+            if (upload.isFinished()) {
+                throw new IllegalStateException("Upload " + upload.getId() + " is already complete");
+            }
+            if (upload.isExpired()) {
+                throw new IllegalStateException("Upload " + upload.getId() + " has expired");
+            }
+            upload.touch();
+            long current = getOffset(upload);
+            if (offset != current) {
+                throw new UploadOffsetException(current);
+            }
+
+            long remaining = upload.getSize() - offset;
+            ReadableByteChannel source = Channels.newChannel(body);
+            try (FileChannel part = FileChannel.open(partFile(upload), StandardOpenOption.WRITE)) {
+                long written = 0;
+                long n;
+                while (written < remaining && (n = part.transferFrom(source, offset + written, remaining - written)) > 0) {
+                    written += n;
+                }
+                if (written == remaining && body.read() != -1) {
+                    part.truncate(offset);
+                    throw new IllegalArgumentException("Chunk runs past the declared size of " + upload.getSize() + " bytes");
+                }
+                if (offset + written < upload.getSize()) {
+                    return Optional.empty();
+                }
+            }
+            upload.setFinished(true);
+        }
+        uploads.remove(upload.getId());
+        return Optional.of(complete(upload));
+    }
+
+    public Optional<Attachment> findAttachment(Long id) {
+        return readYourWrites.read(ReadYourWrites.attachmentKey(id), () -> attachmentRepo.findById(id));
+    }
+
+    // Checked when a message references the attachment, typically right after the upload
+    public boolean attachmentExists(Long id) {
+        return readYourWrites.readPrimary(() -> attachmentRepo.existsById(id));
+    }
+
+    /**
+     * The uploader can always read an attachment; anyone else only once it was
+     * sent in a public message or in a private message to or from them.
+     */
+    public boolean canRead(Attachment attachment, Long userId) {
+        if (attachment.getUploaderId().equals(userId)) {
+            return true;
+        }
+        // The recipient typically downloads right after the message was written
+        return readYourWrites.readPrimary(() -> chatMessageRepo.isAttachmentVisibleTo(attachment.getId(), userId));
+    }
+
+    public Path blobPath(String sha256) {
+        return blobDir.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    private Attachment complete(Upload upload) throws IOException {
+        Path part = partFile(upload);
+        String sha256 = hash(part);
+        Path blob = blobPath(sha256);
+        if (Files.exists(blob)) {
+            Files.delete(part);
+            logger.debug("Upload {} duplicates blob {}", upload.getId(), sha256);
+        } else {
+            Files.createDirectories(blob.getParent());
+            Files.move(part, blob, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        Attachment attachment = new Attachment();
+        attachment.setSha256(sha256);
+        attachment.setFileName(upload.getFileName());
+        attachment.setContentType(upload.getContentType());
+        attachment.setSize(upload.getSize());
+        attachment.setUploaderId(upload.getUploaderId());
+        attachment.setCreatedAt(LocalDateTime.now());
+        Attachment saved = attachmentRepo.save(attachment);
+        readYourWrites.recordWrite(ReadYourWrites.attachmentKey(saved.getId()));
+        return saved;
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Drops uploads that have received nothing for {@code upload-ttl-ms} as of
+     * {@code now} ({@link System#nanoTime()}), and their part files.
+     *
+     * @return the number of uploads dropped
+     */
+    int removeIdleUploads(long now) {
+        long ttlNanos = TimeUnit.MILLISECONDS.toNanos(uploadTtlMillis);
+        int removed = 0;
+        for (Upload upload : uploads.values()) {
+            synchronized (upload) {
+                if (upload.isFinished() || now - upload.getLastActivity() < ttlNanos) {
+                    continue;
+                }
+                upload.setExpired(true);
+            }
+            uploads.remove(upload.getId());
+            deleteQuietly(partFile(upload));
+            removed++;
+        }
+        if (removed > 0) {
+            logger.info("Dropped {} abandoned uploads", removed);
+        }
+        return removed;
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path partFile(Upload upload) {
+        return uploadDir.resolve(upload.getId() + ".part");
+    }
+
+    /**
+     * An upload in progress. Only kept in memory, so uploads can be resumed
+     * for as long as the server keeps running.
+     */
+    // Kept as a bare lower-case type/subtype, so parameters the uploader added never reach a download's headers
+    private static String normalizeContentType(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return null;
+        }
+        MediaType mediaType;
+        try {
+            mediaType = MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            throw new IllegalArgumentException("Invalid content type: " + contentType);
+        }
+        if (mediaType.isWildcardType() || mediaType.isWildcardSubtype()) {
+            throw new IllegalArgumentException("Content type must be concrete: " + contentType);
+        }
+        return (mediaType.getType() + "/" + mediaType.getSubtype()).toLowerCase(Locale.ROOT);
+    }
+
+    public static final class Upload {
+
+        private final String id;
+        private final Long uploaderId;
+        private final String fileName;
+        private final String contentType;
+        private final long size;
+        private boolean finished;
+        private boolean expired;
+        // System.nanoTime() of the start or the last chunk
+        private volatile long lastActivity = System.nanoTime();
+
+        Upload(String id, Long uploaderId, String fileName, String contentType, long size) {
+            this.id = id;
+            this.uploaderId = uploaderId;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.size = size;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Long getUploaderId() {
+            return uploaderId;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        boolean isFinished() {
+            return finished;
+        }
+
+        void setFinished(boolean finished) {
+            this.finished = finished;
+        }
+
+        boolean isExpired() {
+            return expired;
+        }
+
+        void setExpired(boolean expired) {
+            this.expired = expired;
+        }
+
+        long getLastActivity() {
+            return lastActivity;
+        }
+
+        void touch() {
+            lastActivity = System.nanoTime();
+        }
+    }
+}
@@ -5,13 +5,15 @@ import com.example.chat.dto.LoginResponseDTO;
 import com.example.chat.dto.RegisterRequestDTO;
 import com.example.chat.dto.UserDTO;
 import com.example.chat.jwt.JwtService;
+import com.example.chat.jwt.TokenRevocationService;
 import com.example.chat.model.User;
+import com.example.chat.presence.PresenceRegistry;
 import com.example.chat.repo.UserRepo;
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -28,11 +30,32 @@ public class AuthenticationService {
     private PasswordEncoder passwordEncoder;
 
     @Autowired
-    private AuthenticationManager authenticationManager;
+    private PasswordVerificationPool passwordVerificationPool;
+
+    @Autowired
+    private UserService userService;
 
     @Autowired
     private JwtService jwtService;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
     public AuthenticationService(UserRepo userRepo) {
         this.userRepo = userRepo;
     }
@@ -48,27 +71,33 @@ public class AuthenticationService {
         user.setEmail(registerRequestDTO.getEmail());
 
         User savedUser = userRepo.save(user);
+        userDirectory.register(savedUser);
+        resourceVersions.userChanged(savedUser.getUsername());
+        userSearchIndex.add(savedUser.getUsername(), Boolean.TRUE.equals(savedUser.getIsOnline()));
         return convertToUserDTO(savedUser);
     }
 
     public LoginResponseDTO login(LoginRequestDTO loginRequestDTO) {
         logger.info("Attempting login for user: {}", loginRequestDTO.getUsername());
 
-        User user = userRepo.findByUsername(loginRequestDTO.getUsername())
+        // Right after signup the replica may not have the user yet
+        User user = readYourWrites.read(ReadYourWrites.userKey(loginRequestDTO.getUsername()),
+                        () -> userRepo.findByUsername(loginRequestDTO.getUsername()))
                 .orElseThrow(() -> new IllegalArgumentException("Username not found"));
 
         logger.info("User found: {}, attempting authentication", user.getUsername());
 
-        authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequestDTO.getUsername(), loginRequestDTO.getPassword()));
+        // Verify against the user we already loaded instead of going through the
+        // AuthenticationManager, which would look the user up a second time.
+        if (!passwordVerificationPool.matches(loginRequestDTO.getPassword(), user.getPassword())) {
+            throw new BadCredentialsException("Bad credentials");
+        }
 
         logger.info("Authentication successful, setting user as online");
 
-        // Set user as online
+        // Set user as online without holding up the login response
         user.setIsOnline(true);
-        userRepo.save(user);
-
-        logger.info("User {} is now online", user.getUsername());
+        userService.setUserOnlineStatusAsync(user.getUsername(), true);
 
         logger.info("Generating JWT token");
         String jwtToken = jwtService.generateToken(user);
@@ -93,29 +122,30 @@ public class AuthenticationService {
         // Set user as offline
         user.setIsOnline(false);
         userRepo.save(user);
+        resourceVersions.userChanged(username);
+        userSearchIndex.setOnline(username, false);
 
         logger.info("User {} is now offline", username);
     }
 
-    public List<String> getOnlineUsers() {
-        logger.info("Retrieving online users");
-
-        List<User> allUsers = userRepo.findAll();
-        logger.info("Total users in database: {}", allUsers.size());
-
-        List<User> onlineUsers = userRepo.findAllByIsOnline(true);
-        logger.info("Online users found: {}", onlineUsers.size());
-
-        for (User user : onlineUsers) {
-            logger.info("Online user: {} (ID: {}, isOnline: {})",
-                    user.getUsername(), user.getId(), user.getIsOnline());
+    public void logout(String username, String jwtToken) {
+        if (jwtToken != null) {
+            try {
+                Claims claims = jwtService.extractAllClaims(jwtToken);
+                tokenRevocationService.revoke(claims.getId(), claims.getExpiration().getTime());
+                logger.info("Revoked JWT token {} for user {}", claims.getId(), username);
+            } catch (Exception e) {
+                logger.warn("Could not revoke JWT token for user {}: {}", username, e.getMessage());
+            }
         }
 
-        List<String> onlineUsernames = onlineUsers.stream()
-                .map(User::getUsername)
-                .toList();
+        logout(username);
+    }
 
-        logger.info("Returning online usernames: {}", onlineUsernames);
+    // Served from the replicated presence map, so every node answers the same without a query
+    public List<String> getOnlineUsers() {
+        List<String> onlineUsernames = presenceRegistry.getOnlineUsers();
+        logger.debug("Returning {} online usernames", onlineUsernames.size());
         return onlineUsernames;
     }
 
@@ -0,0 +1,56 @@
+package com.example.chat.service;
+
+import com.example.chat.model.ChatMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The most recently read private histories, so that history can still be
+ * answered without the database while {@code CACHE_ONLY_HISTORY} is shed. Each
+ * read from the database replaces the conversation's copy; conversations longer
+ * than {@code max-messages} are not kept.
+ */
+@Component
+public class HistoryCache {
+
+    private final int maxMessages;
+    // conversationKey -> history in access order, guarded by itself
+    private final Map<Long, CachedHistory> histories;
+
+    public HistoryCache(@Value("${chat.overload.history-cache.conversations:1000}") int maxConversations,
+                        @Value("${chat.overload.history-cache.max-messages:500}") int maxMessages) {
+        this.maxMessages = maxMessages;
+        this.histories = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedHistory> eldest) {
+                return size() > maxConversations;
+            }
+        };
+    }
+
+    /**
+     * @param etag the conversation's tag as read before the messages, or {@code null} if it is not versioned
+     */
+    public void put(long conversationKey, String etag, List<ChatMessage> messages) {
+        synchronized (histories) {
+            if (messages.size() > maxMessages) {
+                histories.remove(conversationKey);
+            } else {
+                histories.put(conversationKey, new CachedHistory(etag, List.copyOf(messages)));
+            }
+        }
+    }
+
+    public CachedHistory get(long conversationKey) {
+        synchronized (histories) {
+            return histories.get(conversationKey);
+        }
+    }
+
+    public record CachedHistory(String etag, List<ChatMessage> messages) {
+    }
+}
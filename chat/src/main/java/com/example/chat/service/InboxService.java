@@ -0,0 +1,277 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.InboxEntryDTO;
+import com.example.chat.model.ChatMessage;
+import com.example.chat.model.InboxEntry;
+import com.example.chat.repo.ChatMessageRepo;
+import com.example.chat.repo.InboxEntryRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Per-user list of private conversations. A user's entries are loaded from the
+ * database the first time they are needed and then kept in memory, for the
+ * {@code chat.inbox.cache-size} most recently used users; every private message
+ * updates both participants' entries in {@code inbox_entries} with one statement
+ * each and then in memory. Entries only move forward, to a message with a higher id.
+ *
+ * <p>Other nodes' messages never reach this node's copies, so with
+ * {@code chat.broker.mode=relay} nothing is kept and every call starts from the
+ * primary.
+ */
+@Service
+public class InboxService {
+
+    private final InboxEntryRepo inboxEntryRepo;
+    private final ChatMessageRepo chatMessageRepo;
+    private final UserDirectory userDirectory;
+    private final ReadYourWrites readYourWrites;
+    private final int cacheSize;
+    private final boolean cached;
+    // ownerId -> inbox in access order, guarded by itself; each inbox is guarded by itself
+    private final LinkedHashMap<Long, Inbox> inboxes = new LinkedHashMap<>(16, 0.75f, true);
+
+    public InboxService(InboxEntryRepo inboxEntryRepo, ChatMessageRepo chatMessageRepo, UserDirectory userDirectory,
+                        ReadYourWrites readYourWrites, @Value("${chat.inbox.cache-size:10000}") int cacheSize,
+                        @Value("${chat.broker.mode:simple}") String brokerMode) {
+        this.inboxEntryRepo = inboxEntryRepo;
+        this.chatMessageRepo = chatMessageRepo;
+        this.userDirectory = userDirectory;
+        this.readYourWrites = readYourWrites;
+        this.cacheSize = cacheSize;
+        this.cached = cacheSize > 0 && !"relay".equalsIgnoreCase(brokerMode);
+    }
+
+    public void recordPrivateMessage(ChatMessage chatMessage) {
+        Long senderId = chatMessage.getSenderId();
+        Long receiverId = chatMessage.getReceiverId();
+        if (senderId == null || receiverId == null) {
+            return;
+        }
+        String preview = preview(chatMessage);
+        advance(senderId, receiverId, chatMessage, preview, 0);
+        if (!senderId.equals(receiverId)) {
+            advance(receiverId, senderId, chatMessage, preview, 1);
+        }
+    }
+
+    /**
+     * Call after a private message was deleted. Entries showing it fall back to
+     * the newest remaining message of the conversation, or are removed if none
+     * is left. Unread counts are left alone.
+     */
+    public void recordDeletion(ChatMessage deletedMessage) {
+        Long senderId = deletedMessage.getSenderId();
+        Long receiverId = deletedMessage.getReceiverId();
+        if (senderId == null || receiverId == null || deletedMessage.getConversationKey() == null) {
+            return;
+        }
+        ChatMessage latest = readYourWrites.readPrimary(() ->
+                chatMessageRepo.findFirstByConversationKeyOrderByIdDesc(deletedMessage.getConversationKey()))
+                .orElse(null);
+        retreat(senderId, receiverId, deletedMessage.getId(), latest);
+        if (!senderId.equals(receiverId)) {
+            retreat(receiverId, senderId, deletedMessage.getId(), latest);
+        }
+    }
+
+    public List<InboxEntryDTO> getInbox(String username) {
+        Long ownerId = userDirectory.idOf(username);
+        if (ownerId == null) {
+            return List.of();
+        }
+        List<InboxEntryDTO> entries = withInbox(ownerId, inbox -> {
+            List<InboxEntryDTO> dtos = new ArrayList<>(inbox.size());
+            for (InboxEntry entry : inbox.values()) {
+                dtos.add(InboxEntryDTO.builder()
+                        .partner(userDirectory.usernameOf(entry.getPartnerId()))
+                        .lastMessageId(entry.getLastMessageId())
+                        .lastPreview(entry.getLastPreview())
+                        .lastTimestamp(entry.getLastTimestamp())
+                        .unreadCount(entry.getUnreadCount())
+                        .build());
+            }
+            return dtos;
+        });
+        entries.sort(Comparator.comparing(InboxEntryDTO::getLastMessageId).reversed());
+        return entries;
+    }
+
+    public boolean markRead(String username, String partner) {
+        Long ownerId = userDirectory.idOf(username);
+        Long partnerId = userDirectory.idOf(partner);
+        if (ownerId == null || partnerId == null) {
+            return false;
+        }
+        return withInbox(ownerId, inbox -> {
+            InboxEntry entry = inbox.get(partnerId);
+            if (entry == null) {
+                return false;
+            }
+            if (entry.getUnreadCount() > 0) {
+                entry.setUnreadCount(0);
+                inboxEntryRepo.markRead(ownerId, partnerId);
+            }
+            return true;
+        });
+    }
+
+    // Drops the in-memory copies; the next read reloads from the database
+    void clearCache() {
+        List<Map.Entry<Long, Inbox>> all;
+        synchronized (inboxes) {
+            all = new ArrayList<>(inboxes.entrySet());
+        }
+        all.forEach(entry -> evict(entry.getKey(), entry.getValue()));
+    }
+
+    int cachedInboxCount() {
+        synchronized (inboxes) {
+            return inboxes.size();
+        }
+    }
+
+    private void advance(Long ownerId, Long partnerId, ChatMessage chatMessage, String preview, int unreadIncrement) {
+        withInbox(ownerId, inbox -> {
+            InboxEntry entry = inbox.get(partnerId);
+            if (entry == null) {
+                entry = new InboxEntry();
+                entry.setOwnerId(ownerId);
+                entry.setPartnerId(partnerId);
+                entry.setLastMessageId(chatMessage.getId());
+                entry.setLastPreview(preview);
+                entry.setLastTimestamp(chatMessage.getTimestamp());
+                entry.setUnreadCount(unreadIncrement);
+                try {
+                    inbox.put(partnerId, inboxEntryRepo.save(entry));
+                    return null;
+                } catch (DataIntegrityViolationException e) {
+                    // Only without a cache: another node inserted the row since it was loaded
+                    advanceRow(ownerId, partnerId, chatMessage, preview, unreadIncrement);
+                    return null;
+                }
+            }
+            // The database first, so a failed write leaves the cached entry as it was
+            advanceRow(ownerId, partnerId, chatMessage, preview, unreadIncrement);
+            if (chatMessage.getId() > entry.getLastMessageId()) {
+                entry.setLastMessageId(chatMessage.getId());
+                entry.setLastPreview(preview);
+                entry.setLastTimestamp(chatMessage.getTimestamp());
+            }
+            entry.setUnreadCount(entry.getUnreadCount() + unreadIncrement);
+            return null;
+        });
+    }
+
+    // A message recorded after a later one (or after another node moved the row on) still
+    // counts as unread but does not replace the preview
+    private void advanceRow(Long ownerId, Long partnerId, ChatMessage chatMessage, String preview,
+                            int unreadIncrement) {
+        int advanced = inboxEntryRepo.advance(ownerId, partnerId, chatMessage.getId(), preview,
+                chatMessage.getTimestamp(), unreadIncrement);
+        if (advanced == 0 && unreadIncrement > 0) {
+            inboxEntryRepo.addUnread(ownerId, partnerId, unreadIncrement);
+        }
+    }
+
+    private void retreat(Long ownerId, Long partnerId, Long deletedId, ChatMessage latest) {
+        withInbox(ownerId, inbox -> {
+            InboxEntry entry = inbox.get(partnerId);
+            if (entry == null || !entry.getLastMessageId().equals(deletedId)) {
+                return null;
+            }
+            if (latest == null) {
+                inboxEntryRepo.deleteIfLast(ownerId, partnerId, deletedId);
+                inbox.remove(partnerId);
+            } else {
+                String preview = preview(latest);
+                inboxEntryRepo.replaceLast(ownerId, partnerId, deletedId, latest.getId(), preview,
+                        latest.getTimestamp());
+                entry.setLastMessageId(latest.getId());
+                entry.setLastPreview(preview);
+                entry.setLastTimestamp(latest.getTimestamp());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs {@code action} on the owner's entries while holding the owner's lock.
+     * The entries are loaded under that lock rather than the map's, so a slow load
+     * holds up only this owner. An inbox is evicted under its own lock too, so a
+     * replacement is never loaded while a write to the old one is in flight.
+     */
+    private <T> T withInbox(Long ownerId, Function<Map<Long, InboxEntry>, T> action) {
+        if (!cached) {
+            return action.apply(load(ownerId));
+        }
+        while (true) {
+            Inbox inbox;
+            Map.Entry<Long, Inbox> eldest = null;
+            synchronized (inboxes) {
+                inbox = inboxes.get(ownerId);
+                if (inbox == null) {
+                    inbox = new Inbox();
+                    inboxes.put(ownerId, inbox);
+                    if (inboxes.size() > cacheSize) {
+                        eldest = inboxes.entrySet().iterator().next();
+                    }
+                }
+            }
+            if (eldest != null) {
+                evict(eldest.getKey(), eldest.getValue());
+            }
+            synchronized (inbox) {
+                if (inbox.evicted) {
+                    continue;
+                }
+                if (inbox.entries == null) {
+                    inbox.entries = load(ownerId);
+                }
+                return action.apply(inbox.entries);
+            }
+        }
+    }
+
+    private void evict(Long ownerId, Inbox inbox) {
+        synchronized (inbox) {
+            inbox.evicted = true;
+        }
+        synchronized (inboxes) {
+            inboxes.remove(ownerId, inbox);
+        }
+    }
+
+    // The cached copy is only ever advanced, so it has to start from the primary
+    private Map<Long, InboxEntry> load(Long ownerId) {
+        Map<Long, InboxEntry> entries = new HashMap<>();
+        for (InboxEntry entry : readYourWrites.readPrimary(() -> inboxEntryRepo.findByOwnerId(ownerId))) {
+            entries.put(entry.getPartnerId(), entry);
+        }
+        return entries;
+    }
+
+    private static String preview(ChatMessage chatMessage) {
+        String content = chatMessage.getContent();
+        if (content == null || content.isBlank()) {
+            return chatMessage.getAttachmentId() != null ? "[attachment]" : "";
+        }
+        content = content.strip();
+        return content.length() <= InboxEntry.PREVIEW_LENGTH ? content : content.substring(0, InboxEntry.PREVIEW_LENGTH);
+    }
+
+    private static final class Inbox {
+        // partnerId -> entry; null until loaded
+        Map<Long, InboxEntry> entries;
+        boolean evicted;
+    }
+}
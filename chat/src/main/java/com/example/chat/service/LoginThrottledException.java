@@ -0,0 +1,19 @@
+package com.example.chat.service;
+
+/**
+ * Thrown when the password verification pool cannot take another login.
+ * Clients should retry after {@link #getRetryAfterSeconds()}.
+ */
+public class LoginThrottledException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public LoginThrottledException(long retryAfterSeconds) {
+        super("Too many concurrent logins, retry after " + retryAfterSeconds + "s");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.chat.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Sends reads to the primary for a short window after a write they depend on,
+ * so a user sees their own message or signup before the replica has caught up,
+ * and always for reads that must not be stale. Does nothing when no replica is
+ * configured.
+ */
+@Component
+public class ReadYourWrites {
+
+    private static final int PURGE_THRESHOLD = 10_000;
+
+    private final boolean replicaEnabled;
+    private final long windowNanos;
+    private final TransactionTemplate primaryRead;
+    // key -> System.nanoTime() until which reads go to the primary
+    private final Map<String, Long> recentWrites = new ConcurrentHashMap<>();
+
+    public ReadYourWrites(PlatformTransactionManager transactionManager,
+                          @Value("${chat.datasource.replica.url:}") String replicaUrl,
+                          @Value("${chat.datasource.replica.read-your-writes-ms:2000}") long windowMillis) {
+        this.replicaEnabled = !replicaUrl.isEmpty();
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        // a read-write transaction pins the connection to the primary; nested repository calls join it
+        this.primaryRead = new TransactionTemplate(transactionManager);
+    }
+
+    public static String userKey(String username) {
+        return "user:" + username;
+    }
+
+    public static String conversationKey(long conversationKey) {
+        return "conversation:" + conversationKey;
+    }
+
+    public static String attachmentKey(long attachmentId) {
+        return "attachment:" + attachmentId;
+    }
+
+    public void recordWrite(String key) {
+        if (!replicaEnabled || key == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        recentWrites.put(key, now + windowNanos);
+        if (recentWrites.size() > PURGE_THRESHOLD) {
+            recentWrites.values().removeIf(until -> until - now <= 0);
+        }
+    }
+
+    public <T> T read(String key, Supplier<T> query) {
+        if (!replicaEnabled || !isRecent(key)) {
+            return query.get();
+        }
+        return primaryRead.execute(status -> query.get());
+    }
+
+    // For reads that feed a write or an in-memory cache, where a stale answer would stick
+    public <T> T readPrimary(Supplier<T> query) {
+        if (!replicaEnabled) {
+            return query.get();
+        }
+        return primaryRead.execute(status -> query.get());
+    }
+
+    private boolean isRecent(String key) {
+        Long until = recentWrites.get(key);
+        if (until == null) {
+            return false;
+        }
+        if (until - System.nanoTime() > 0) {
+            return true;
+        }
+        recentWrites.remove(key, until);
+        return false;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.chat.service;
+
+import com.example.chat.presence.PresenceRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory versions of the resources clients poll, so a conditional GET can be
+ * answered from the {@code If-None-Match} header alone. Every change takes the
+ * next number from one node-wide sequence; anything not changed since start is
+ * at version 0, and the start epoch in the tag keeps those from matching tags
+ * handed out by an earlier process.
+ *
+ * <p>Conversation and user changes are only seen on the node that made them, so
+ * with {@code chat.broker.mode=relay} those tags are not issued. The presence
+ * tag is issued in every mode, but it is no more shared than the others: the
+ * membership version counts changes as this node applied them and the epoch
+ * belongs to this process. A client moving to another node gets a different tag,
+ * unless both processes started in the same millisecond, and reloads the list once.
+ */
+@Component
+public class ResourceVersions {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, Long> conversations = new ConcurrentHashMap<>();
+    private final Map<String, Long> users = new ConcurrentHashMap<>();
+    private final boolean localWritesOnly;
+    private final PresenceRegistry presenceRegistry;
+    private final ReadYourWrites readYourWrites;
+
+    public ResourceVersions(PresenceRegistry presenceRegistry, ReadYourWrites readYourWrites,
+                            @Value("${chat.broker.mode:simple}") String brokerMode) {
+        this.presenceRegistry = presenceRegistry;
+        this.readYourWrites = readYourWrites;
+        this.localWritesOnly = !"relay".equalsIgnoreCase(brokerMode);
+    }
+
+    // Call after the write is done. The next reads go to the primary, so a lagging
+    // replica cannot hand out the old body under the new tag.
+    public void conversationChanged(long conversationKey) {
+        conversations.put(conversationKey, sequence.incrementAndGet());
+        readYourWrites.recordWrite(ReadYourWrites.conversationKey(conversationKey));
+    }
+
+    public void userChanged(String username) {
+        users.put(username, sequence.incrementAndGet());
+        readYourWrites.recordWrite(ReadYourWrites.userKey(username));
+    }
+
+    /**
+     * Tags are read before the data they describe, so a change in between leaves
+     * an old tag on a newer body and the next poll simply reloads.
+     *
+     * @return the strong entity tag, or {@code null} if the resource is not versioned
+     */
+    public String conversationTag(long conversationKey) {
+        if (!localWritesOnly) {
+            return null;
+        }
+        return tag("c", conversations.getOrDefault(conversationKey, 0L));
+    }
+
+    public String userTag(String username) {
+        if (!localWritesOnly) {
+            return null;
+        }
+        return tag("u", users.getOrDefault(username, 0L));
+    }
+
+    public String presenceTag() {
+        return tag("p", presenceRegistry.getMembershipVersion());
+    }
+
+    private String tag(String kind, long version) {
+        return "\"" + epoch + "-" + kind + version + "\"";
+    }
+}
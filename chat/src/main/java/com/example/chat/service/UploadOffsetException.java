@@ -0,0 +1,18 @@
+package com.example.chat.service;
+
+/**
+ * A chunk was sent for a different offset than the upload has reached.
+ */
+public class UploadOffsetException extends RuntimeException {
+
+    private final long expectedOffset;
+
+    public UploadOffsetException(long expectedOffset) {
+        super("Upload is at offset " + expectedOffset);
+        this.expectedOffset = expectedOffset;
+    }
+
+    public long getExpectedOffset() {
+        return expectedOffset;
+    }
+}
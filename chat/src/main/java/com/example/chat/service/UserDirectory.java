@@ -0,0 +1,82 @@
+package com.example.chat.service;
+
+import com.example.chat.model.ChatMessage;
+import com.example.chat.model.User;
+import com.example.chat.repo.UserRepo;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory id/username dictionary. Messages only store user ids; names are
+ * resolved here when messages go out, and every message from a user shares
+ * the same String instance for their name. Misses fall back to the database.
+ */
+@Component
+public class UserDirectory {
+
+    private final UserRepo userRepo;
+    private final Map<String, Long> idsByUsername = new ConcurrentHashMap<>();
+    private final Map<Long, String> usernamesById = new ConcurrentHashMap<>();
+
+    public UserDirectory(UserRepo userRepo) {
+        this.userRepo = userRepo;
+    }
+
+    public Long idOf(String username) {
+        if (username == null) {
+            return null;
+        }
+        Long id = idsByUsername.get(username);
+        if (id == null) {
+            id = userRepo.findByUsername(username).map(this::register).orElse(null);
+        }
+        return id;
+    }
+
+    public String usernameOf(Long id) {
+        if (id == null) {
+            return null;
+        }
+        String username = usernamesById.get(id);
+        if (username == null) {
+            username = userRepo.findById(id).map(user -> usernamesById.get(register(user))).orElse(null);
+        }
+        return username;
+    }
+
+    public Long register(User user) {
+        String username = user.getUsername();
+        String previous = usernamesById.put(user.getId(), username);
+        if (previous != null && !previous.equals(username)) {
+            idsByUsername.remove(previous, user.getId());
+        }
+        idsByUsername.put(username, user.getId());
+        return user.getId();
+    }
+
+    public int size() {
+        return usernamesById.size();
+    }
+
+    // Sets the id columns from the sender/receiver names before a message is saved
+    public void assignIds(ChatMessage chatMessage) {
+        chatMessage.setSenderId(idOf(chatMessage.getSender()));
+        chatMessage.setReceiverId(idOf(chatMessage.getReceiver()));
+        if (chatMessage.getMessageType() == ChatMessage.MessageType.PRIVATE_MESSAGE
+                && chatMessage.getSenderId() != null && chatMessage.getReceiverId() != null) {
+            chatMessage.setConversationKey(
+                    ChatMessage.conversationKey(chatMessage.getSenderId(), chatMessage.getReceiverId()));
+        }
+    }
+
+    public List<ChatMessage> resolveNames(List<ChatMessage> chatMessages) {
+        for (ChatMessage chatMessage : chatMessages) {
+            chatMessage.setSender(usernameOf(chatMessage.getSenderId()));
+            chatMessage.setReceiver(usernameOf(chatMessage.getReceiverId()));
+        }
+        return chatMessages;
+    }
+}
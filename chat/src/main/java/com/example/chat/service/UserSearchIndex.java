@@ -0,0 +1,122 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.UserSearchResultDTO;
+import com.example.chat.presence.PresenceChangedEvent;
+import com.example.chat.repo.UserRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sorted in-memory index of usernames for prefix search. Keys are the
+ * lower-cased name followed by the original, so matching ignores case and
+ * names that differ only in case stay separate. Online users are kept in a
+ * second index so they can be listed first without scanning all matches.
+ */
+@Component
+public class UserSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    private static final char SEPARATOR = '\u0000';
+    private static final char KEY_END = '\uffff';
+
+    private final UserRepo userRepo;
+    private final ReadYourWrites readYourWrites;
+    private final NavigableMap<String, String> allUsers = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, String> onlineUsers = new ConcurrentSkipListMap<>();
+
+    public UserSearchIndex(UserRepo userRepo, ReadYourWrites readYourWrites) {
+        this.userRepo = userRepo;
+        this.readYourWrites = readYourWrites;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        for (Object[] row : readYourWrites.readPrimary(userRepo::findAllUsernamesAndOnlineStatus)) {
+            add((String) row[0], Boolean.TRUE.equals(row[1]));
+        }
+        logger.info("User search index loaded with {} users", allUsers.size());
+    }
+
+    // Keeps the online ordering in step with sessions on other nodes
+    @EventListener
+    public void onPresenceChanged(PresenceChangedEvent event) {
+        setOnline(event.username(), event.online());
+    }
+
+    public void add(String username, boolean online) {
+        String key = key(username);
+        allUsers.put(key, username);
+        if (online) {
+            onlineUsers.put(key, username);
+        } else {
+            onlineUsers.remove(key);
+        }
+    }
+
+    public void setOnline(String username, boolean online) {
+        String key = key(username);
+        if (!allUsers.containsKey(key)) {
+            return;
+        }
+        if (online) {
+            onlineUsers.put(key, username);
+        } else {
+            onlineUsers.remove(key);
+        }
+    }
+
+    /**
+     * Up to {@code limit} users whose name starts with {@code prefix}, ignoring
+     * case: online users first, then the rest, each in name order.
+     */
+    public List<UserSearchResultDTO> search(String prefix, int limit) {
+        String from = prefix.toLowerCase(Locale.ROOT);
+        String to = from + KEY_END;
+        List<UserSearchResultDTO> results = new ArrayList<>(Math.min(limit, 64));
+        Set<String> seen = new HashSet<>();
+
+        for (var entry : onlineUsers.subMap(from, true, to, false).entrySet()) {
+            if (results.size() == limit) {
+                return results;
+            }
+            seen.add(entry.getKey());
+            results.add(result(entry.getValue(), true));
+        }
+        for (var entry : allUsers.subMap(from, true, to, false).entrySet()) {
+            if (results.size() == limit) {
+                break;
+            }
+            if (!seen.contains(entry.getKey())) {
+                results.add(result(entry.getValue(), false));
+            }
+        }
+        return results;
+    }
+
+    public int size() {
+        return allUsers.size();
+    }
+
+    private static UserSearchResultDTO result(String username, boolean online) {
+        UserSearchResultDTO result = new UserSearchResultDTO();
+        result.setUsername(username);
+        result.setIsOnline(online);
+        return result;
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT) + SEPARATOR + username;
+    }
+}
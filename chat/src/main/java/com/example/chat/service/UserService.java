@@ -1,21 +1,113 @@
 package com.example.chat.service;
 
+import com.example.chat.overload.OverloadController;
+import com.example.chat.overload.OverloadMode;
+import com.example.chat.overload.OverloadModeChangedEvent;
 import com.example.chat.repo.UserRepo;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Service
 public class UserService {
+    private static final int PRESENCE_LOCK_STRIPES = 64;
+
     private final UserRepo userRepo;
+    private final UserSearchIndex userSearchIndex;
+    private final ReadYourWrites readYourWrites;
+    private final ResourceVersions resourceVersions;
+    private final OverloadController overloadController;
+    private final ThreadPoolTaskExecutor presenceExecutor;
+    // Latest online flag per user, held back while presence persistence is shed or the presence queue is full
+    private final Map<String, Boolean> deferredOnlineStatus = new ConcurrentHashMap<>();
+    // A user's database write and deferred entry change together under the user's stripe
+    private final Object[] presenceLocks = new Object[PRESENCE_LOCK_STRIPES];
 
-    public UserService(UserRepo userRepo) {
+    public UserService(UserRepo userRepo, UserSearchIndex userSearchIndex, ReadYourWrites readYourWrites,
+                       ResourceVersions resourceVersions, OverloadController overloadController,
+                       @Qualifier("presenceExecutor") ThreadPoolTaskExecutor presenceExecutor) {
         this.userRepo = userRepo;
+        this.userSearchIndex = userSearchIndex;
+        this.readYourWrites = readYourWrites;
+        this.resourceVersions = resourceVersions;
+        this.overloadController = overloadController;
+        this.presenceExecutor = presenceExecutor;
+        for (int i = 0; i < presenceLocks.length; i++) {
+            presenceLocks[i] = new Object();
+        }
     }
 
     public boolean userExists(String username) {
-        return userRepo.existsByUsername(username);
+        return readYourWrites.read(ReadYourWrites.userKey(username), () -> userRepo.existsByUsername(username));
     }
 
     public void setUserOnlineStatus(String username, boolean isOnline){
+        userSearchIndex.setOnline(username, isOnline);
+        synchronized (presenceLock(username)) {
+            if (overloadController.shed(OverloadMode.SKIP_PRESENCE_PERSISTENCE)) {
+                deferredOnlineStatus.put(username, isOnline);
+                return;
+            }
+            persistOnlineStatus(username, isOnline);
+            deferredOnlineStatus.remove(username);
+        }
+    }
+
+    // Login does not wait for the write. With the presence queue full the write is held back
+    // like a shed one, and the next queued write flushes it.
+    public void setUserOnlineStatusAsync(String username, boolean isOnline) {
+        try {
+            presenceExecutor.execute(() -> {
+                setUserOnlineStatus(username, isOnline);
+                flushDeferred();
+            });
+        } catch (TaskRejectedException e) {
+            userSearchIndex.setOnline(username, isOnline);
+            synchronized (presenceLock(username)) {
+                deferredOnlineStatus.put(username, isOnline);
+            }
+        }
+    }
+
+    // Catch the database up once presence writes are allowed again, off the overload sampler thread
+    @EventListener
+    public void onOverloadModeChanged(OverloadModeChangedEvent event) {
+        if (event.to().isAtLeast(OverloadMode.SKIP_PRESENCE_PERSISTENCE)) {
+            return;
+        }
+        try {
+            presenceExecutor.execute(this::flushDeferred);
+        } catch (TaskRejectedException e) {
+            // every queued write flushes what is left once it has run
+        }
+    }
+
+    private void flushDeferred() {
+        if (deferredOnlineStatus.isEmpty() || overloadController.shed(OverloadMode.SKIP_PRESENCE_PERSISTENCE)) {
+            return;
+        }
+        for (String username : deferredOnlineStatus.keySet()) {
+            synchronized (presenceLock(username)) {
+                Boolean isOnline = deferredOnlineStatus.get(username);
+                if (isOnline != null) {
+                    persistOnlineStatus(username, isOnline);
+                    deferredOnlineStatus.remove(username);
+                }
+            }
+        }
+    }
+
+    private Object presenceLock(String username) {
+        return presenceLocks[Math.floorMod(username.hashCode(), presenceLocks.length)];
+    }
+
+    private void persistOnlineStatus(String username, boolean isOnline) {
         userRepo.updateUserOnlineStatus(username, isOnline);
+        resourceVersions.userChanged(username);
     }
 }
@@ -0,0 +1,97 @@
+package com.example.chat.websocket;
+
+import com.example.chat.dto.BrokerStatsDTO;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * {@code /actuator/chatbroker}: live session, subscription and executor figures.
+ * Everything is read from counters and queue sizes that are already maintained,
+ * so it is cheap enough to poll every second. User names and session ids are
+ * left out; the endpoint needs a token like the other non-probe endpoints.
+ */
+@Component
+@Endpoint(id = "chatbroker")
+public class BrokerStatsEndpoint {
+
+    private final WebSocketMessageBrokerStats brokerStats;
+    private final SimpUserRegistry userRegistry;
+    private final SubscriptionTracker subscriptionTracker;
+    private final WebSocketSessionRegistry sessionRegistry;
+    private final ThreadPoolTaskExecutor inboundExecutor;
+    private final ThreadPoolTaskExecutor outboundExecutor;
+
+    @Value("${chat.broker-stats.top-destinations:50}")
+    private int topDestinations;
+
+    @Value("${chat.broker-stats.top-buffered-sessions:20}")
+    private int topBufferedSessions;
+
+    public BrokerStatsEndpoint(WebSocketMessageBrokerStats brokerStats, SimpUserRegistry userRegistry,
+                               SubscriptionTracker subscriptionTracker, WebSocketSessionRegistry sessionRegistry,
+                               @Qualifier("clientInboundChannelExecutor") ThreadPoolTaskExecutor inboundExecutor,
+                               @Qualifier("clientOutboundChannelExecutor") ThreadPoolTaskExecutor outboundExecutor) {
+        this.brokerStats = brokerStats;
+        this.userRegistry = userRegistry;
+        this.subscriptionTracker = subscriptionTracker;
+        this.sessionRegistry = sessionRegistry;
+        this.inboundExecutor = inboundExecutor;
+        this.outboundExecutor = outboundExecutor;
+    }
+
+    @ReadOperation
+    public BrokerStatsDTO stats() {
+        SubProtocolWebSocketHandler.Stats sessions = brokerStats.getWebSocketSessionStats();
+        StompSubProtocolHandler.Stats stomp = brokerStats.getStompSubProtocolStats();
+
+        long bufferedBytes = 0;
+        for (ConcurrentWebSocketSessionDecorator session : sessionRegistry.getSessions()) {
+            bufferedBytes += session.getBufferSize();
+        }
+        List<Integer> largestBuffers = List.of();
+        if (bufferedBytes > 0) {
+            largestBuffers = sessionRegistry.getSessions().stream()
+                    .map(ConcurrentWebSocketSessionDecorator::getBufferSize)
+                    .filter(size -> size > 0)
+                    .sorted(Comparator.reverseOrder())
+                    .limit(topBufferedSessions)
+                    .toList();
+        }
+
+        return BrokerStatsDTO.builder()
+                .timestamp(System.currentTimeMillis())
+                .openSessions(sessions != null ? sessions.getWebSocketSessions() + sessions.getHttpStreamingSessions()
+                        + sessions.getHttpPollingSessions() : 0)
+                .sessionsOpenedSinceStart(sessions != null ? sessions.getTotalSessions() : 0)
+                .webSocketSessions(sessions != null ? sessions.getWebSocketSessions() : 0)
+                .httpStreamingSessions(sessions != null ? sessions.getHttpStreamingSessions() : 0)
+                .httpPollingSessions(sessions != null ? sessions.getHttpPollingSessions() : 0)
+                .limitExceededSessions(sessions != null ? sessions.getLimitExceededSessions() : 0)
+                .noMessagesReceivedSessions(sessions != null ? sessions.getNoMessagesReceivedSessions() : 0)
+                .transportErrorSessions(sessions != null ? sessions.getTransportErrorSessions() : 0)
+                .stompConnected(stomp != null ? stomp.getTotalConnected() : 0)
+                .stompDisconnected(stomp != null ? stomp.getTotalDisconnect() : 0)
+                .principalUsers(userRegistry.getUserCount())
+                .destinationCount(subscriptionTracker.getDestinationCount())
+                .topDestinations(subscriptionTracker.getTopDestinations(topDestinations))
+                .inboundQueueDepth(inboundExecutor.getQueueSize())
+                .inboundActiveThreads(inboundExecutor.getActiveCount())
+                .outboundQueueDepth(outboundExecutor.getQueueSize())
+                .outboundActiveThreads(outboundExecutor.getActiveCount())
+                .bufferedBytes(bufferedBytes)
+                .largestSessionBuffers(largestBuffers)
+                .build();
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.chat.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closes sessions whose client is gone but whose connection never reported it,
+ * typically a phone that dropped off the network. A session is reaped when it
+ * has sent nothing, not even a heartbeat, for {@code idle-timeout-ms}, or when a
+ * write to it has been stuck for {@code send-stall-ms}. Closing goes through the
+ * normal disconnect path, so presence, subscriptions and the online flag are
+ * cleaned up as for any other disconnect. At most {@code batch-size} sessions
+ * are closed per sweep so a mass network drop is unwound gradually.
+ *
+ * <p>Closing writes a close frame, which can block on exactly the dead
+ * connections being reaped, so closes run on a small pool of their own and are
+ * interrupted after {@code close-timeout-ms}; the container then drops the
+ * connection.
+ */
+@Component
+public class IdleSessionReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdleSessionReaper.class);
+
+    private final WebSocketSessionRegistry sessionRegistry;
+    private final long intervalMillis;
+    private final long idleTimeoutNanos;
+    private final long sendStallMillis;
+    private final int batchSize;
+    private final long closeTimeoutMillis;
+    private final Counter reapedIdle;
+    private final Counter reapedStalled;
+    private final Counter reclaimedBytes;
+    private final Counter closeTimeouts;
+    // Ids of sessions whose close is still running, so a slow close is not started twice
+    private final Set<String> closing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService closer;
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "websocket-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public IdleSessionReaper(WebSocketSessionRegistry sessionRegistry, MeterRegistry meterRegistry,
+                             @Value("${chat.websocket.reaper.interval-ms:5000}") long intervalMillis,
+                             @Value("${chat.websocket.reaper.idle-timeout-ms:60000}") long idleTimeoutMillis,
+                             @Value("${chat.websocket.reaper.send-stall-ms:30000}") long sendStallMillis,
+                             @Value("${chat.websocket.reaper.batch-size:200}") int batchSize,
+                             @Value("${chat.websocket.reaper.close-timeout-ms:5000}") long closeTimeoutMillis,
+                             @Value("${chat.websocket.reaper.close-threads:4}") int closeThreads) {
+        this.sessionRegistry = sessionRegistry;
+        this.intervalMillis = intervalMillis;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.sendStallMillis = sendStallMillis;
+        this.batchSize = batchSize;
+        this.closeTimeoutMillis = closeTimeoutMillis;
+        this.reapedIdle = reapedCounter(meterRegistry, "idle");
+        this.reapedStalled = reapedCounter(meterRegistry, "send_stalled");
+        this.reclaimedBytes = Counter.builder("chat.websocket.reaped.buffer")
+                .description("Buffered outbound bytes released by closing reaped sessions")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.closeTimeouts = Counter.builder("chat.websocket.reaped.close.timeouts")
+                .description("Reaped sessions whose close did not finish within close-timeout-ms")
+                .register(meterRegistry);
+        AtomicInteger closerThreads = new AtomicInteger();
+        this.closer = Executors.newFixedThreadPool(closeThreads, runnable -> {
+            Thread thread = new Thread(runnable, "websocket-reaper-close-" + closerThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static Counter reapedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("chat.websocket.reaped")
+                .description("Sessions closed by the idle session reaper")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        sweeper.scheduleWithFixedDelay(this::sweep, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+        closer.shutdownNow();
+    }
+
+    /**
+     * @return the number of sessions handed over to be closed
+     */
+    int sweep() {
+        try {
+            long now = System.nanoTime();
+            List<ConcurrentWebSocketSessionDecorator> idle = new ArrayList<>();
+            List<ConcurrentWebSocketSessionDecorator> stalled = new ArrayList<>();
+            for (ConcurrentWebSocketSessionDecorator session : sessionRegistry.getSessions()) {
+                if (idle.size() + stalled.size() >= batchSize) {
+                    break;
+                }
+                if (closing.contains(session.getId())) {
+                    continue;
+                }
+                if (session.getTimeSinceSendStarted() > sendStallMillis) {
+                    stalled.add(session);
+                } else if (sessionRegistry.nanosSinceInbound(session.getId(), now) > idleTimeoutNanos) {
+                    idle.add(session);
+                }
+            }
+            idle.forEach(session -> reap(session, reapedIdle));
+            stalled.forEach(session -> reap(session, reapedStalled));
+            if (!idle.isEmpty() || !stalled.isEmpty()) {
+                logger.info("Reaped {} idle and {} stalled WebSocket sessions", idle.size(), stalled.size());
+            }
+            return idle.size() + stalled.size();
+        } catch (Exception e) {
+            logger.warn("WebSocket session sweep failed: {}", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    private void reap(ConcurrentWebSocketSessionDecorator session, Counter reason) {
+        int buffered = session.getBufferSize();
+        closing.add(session.getId());
+        Future<?> close = closer.submit(() -> {
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (Exception e) {
+                logger.debug("Error closing reaped session {}: {}", session.getId(), e.getMessage());
+            } finally {
+                closing.remove(session.getId());
+            }
+        });
+        sweeper.schedule(() -> {
+            if (!close.isDone()) {
+                closeTimeouts.increment();
+                logger.warn("Close of reaped session {} took over {} ms, interrupting it", session.getId(),
+                        closeTimeoutMillis);
+                close.cancel(true);
+                // a close cancelled before it started never reaches its finally
+                closing.remove(session.getId());
+            }
+        }, closeTimeoutMillis, TimeUnit.MILLISECONDS);
+        reason.increment();
+        reclaimedBytes.increment(buffered);
+    }
+}
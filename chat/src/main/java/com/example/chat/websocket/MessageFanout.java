@@ -0,0 +1,80 @@
+package com.example.chat.websocket;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Map;
+
+/**
+ * Sends one payload to several destinations while encoding it only once.
+ * {@code convertAndSend} runs the message converter per call; here the JSON
+ * bytes are produced up front and every destination gets a message that
+ * shares the same byte array.
+ */
+@Component
+public class MessageFanout {
+
+    private static final MessageHeaders JSON_HEADERS =
+            new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON));
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    public MessageFanout(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    public EncodedMessage encode(Object payload) {
+        MessageConverter converter = messagingTemplate.getMessageConverter();
+        Message<?> message = converter.toMessage(payload, JSON_HEADERS);
+        if (message == null || !(message.getPayload() instanceof byte[] bytes)) {
+            throw new MessageConversionException("Unable to encode payload of type " + payload.getClass().getName());
+        }
+        MimeType contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE, MimeType.class);
+        return new EncodedMessage(bytes, contentType != null ? contentType : MimeTypeUtils.APPLICATION_JSON);
+    }
+
+    public void send(Object payload, String... destinations) {
+        send(encode(payload), destinations);
+    }
+
+    public void send(EncodedMessage encoded, String... destinations) {
+        for (String destination : destinations) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setContentType(encoded.contentType);
+            accessor.setLeaveMutable(true);
+            messagingTemplate.send(destination, MessageBuilder.createMessage(encoded.payload, accessor.getMessageHeaders()));
+        }
+    }
+
+    /**
+     * An encoded payload. The bytes are never handed out, so the array shared
+     * by all outgoing messages cannot be modified after encoding.
+     */
+    public static final class EncodedMessage {
+
+        private final byte[] payload;
+        private final MimeType contentType;
+
+        private EncodedMessage(byte[] payload, MimeType contentType) {
+            this.payload = payload;
+            this.contentType = contentType;
+        }
+
+        public int size() {
+            return payload.length;
+        }
+
+        public MimeType getContentType() {
+            return contentType;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.chat.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt-in ({@code chat.websocket.coalesce.enabled}) interceptor on the client
+ * outbound channel. JSON MESSAGE frames for the same session and subscription
+ * that arrive within {@code window-ms} of each other are written as one frame
+ * whose body is a JSON array; batches are flattened into it. A lone message is
+ * sent unchanged, so clients must accept both an object and an array. Only
+ * destinations starting with one of {@code destinations} are held back. Each
+ * message is delayed by at most the window.
+ */
+@Component
+public class OutboundCoalescer implements ChannelInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundCoalescer.class);
+
+    // Marks frames this interceptor built so they pass straight through
+    private static final String COALESCED_HEADER = "chatCoalesced";
+
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int maxMessages;
+    private final List<String> destinations;
+    private final Counter coalescedMessages;
+    private final Counter coalescedFrames;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    public OutboundCoalescer(MeterRegistry meterRegistry,
+                             @Value("${chat.websocket.coalesce.enabled:false}") boolean enabled,
+                             @Value("${chat.websocket.coalesce.window-ms:5}") long windowMillis,
+                             @Value("${chat.websocket.coalesce.max-messages:100}") int maxMessages,
+                             @Value("${chat.websocket.coalesce.destinations:/topic/group,/user/queue/private}")
+                             List<String> destinations) {
+        this.enabled = enabled;
+        this.windowMillis = windowMillis;
+        this.maxMessages = maxMessages;
+        this.destinations = destinations.stream().map(String::trim).toList();
+        this.coalescedMessages = Counter.builder("chat.websocket.coalesced.messages")
+                .description("Outbound frames merged into a coalesced frame, a batch counting once")
+                .register(meterRegistry);
+        this.coalescedFrames = Counter.builder("chat.websocket.coalesced.frames")
+                .description("Coalesced frames written, each holding two or more messages")
+                .register(meterRegistry);
+        this.flusher = enabled ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbound-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (!enabled || !isCoalescable(message)) {
+            return message;
+        }
+        String key = SimpMessageHeaderAccessor.getSessionId(message.getHeaders()) + ':'
+                + SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+        Pending[] full = new Pending[1];
+        Pending[] opened = new Pending[1];
+        pending.compute(key, (k, buffer) -> {
+            if (buffer == null) {
+                buffer = new Pending(channel);
+                opened[0] = buffer;
+            }
+            buffer.messages.add(message);
+            if (buffer.messages.size() >= maxMessages) {
+                full[0] = buffer;
+                return null;
+            }
+            return buffer;
+        });
+        // All flushes run on the one flusher thread, in the order their buffers were closed, so frames
+        // for a subscription leave in order. A timer only flushes the buffer it was started for.
+        if (full[0] != null) {
+            Pending buffer = full[0];
+            flusher.execute(() -> flush(buffer));
+        } else if (opened[0] != null) {
+            Pending buffer = opened[0];
+            flusher.schedule(() -> {
+                if (pending.remove(key, buffer)) {
+                    flush(buffer);
+                }
+            }, windowMillis, TimeUnit.MILLISECONDS);
+        }
+        // The broker ignores the send result on this channel, so holding the message back is safe
+        return null;
+    }
+
+    private boolean isCoalescable(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || !(message.getPayload() instanceof byte[])
+                || headers.containsKey(COALESCED_HEADER)
+                || SimpMessageHeaderAccessor.getSessionId(headers) == null
+                || SimpMessageHeaderAccessor.getSubscriptionId(headers) == null) {
+            return false;
+        }
+        Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+        MimeType mimeType = contentType instanceof String value ? MimeTypeUtils.parseMimeType(value) : (MimeType) contentType;
+        if (mimeType == null || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType)) {
+            return false;
+        }
+        // User destinations are matched on what the client subscribed to, not the per-session queue
+        Object original = headers.get(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION);
+        String destination = original instanceof String originalDestination
+                ? originalDestination : SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null) {
+            return false;
+        }
+        for (String prefix : destinations) {
+            if (destination.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void flush(Pending buffer) {
+        try {
+            if (buffer.messages.size() == 1) {
+                SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(buffer.messages.get(0));
+                accessor.setHeader(COALESCED_HEADER, Boolean.TRUE);
+                buffer.channel.send(MessageBuilder.createMessage(buffer.messages.get(0).getPayload(),
+                        accessor.getMessageHeaders()));
+                return;
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            body.write('[');
+            boolean empty = true;
+            for (Message<?> message : buffer.messages) {
+                byte[] payload = (byte[]) message.getPayload();
+                int offset = 0;
+                int length = payload.length;
+                // An array (a batch) is spliced in element by element
+                if (length >= 2 && payload[0] == '[' && payload[length - 1] == ']') {
+                    offset = 1;
+                    length -= 2;
+                }
+                if (length == 0) {
+                    continue;
+                }
+                if (!empty) {
+                    body.write(',');
+                }
+                body.write(payload, offset, length);
+                empty = false;
+            }
+            body.write(']');
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(buffer.messages.get(0));
+            accessor.setHeader(COALESCED_HEADER, Boolean.TRUE);
+            buffer.channel.send(MessageBuilder.createMessage(body.toByteArray(), accessor.getMessageHeaders()));
+            coalescedMessages.increment(buffer.messages.size());
+            coalescedFrames.increment();
+        } catch (Exception e) {
+            logger.warn("Failed to flush {} coalesced messages: {}", buffer.messages.size(), e.getMessage(), e);
+        }
+    }
+
+    private static final class Pending {
+
+        private final MessageChannel channel;
+        private final List<Message<?>> messages = new ArrayList<>();
+
+        private Pending(MessageChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
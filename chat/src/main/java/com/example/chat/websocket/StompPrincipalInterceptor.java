@@ -0,0 +1,80 @@
+package com.example.chat.websocket;
+
+import com.example.chat.jwt.JwtService;
+import com.example.chat.jwt.TokenRevocationService;
+import com.example.chat.service.UserDirectory;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+
+/**
+ * Gives each STOMP session a user on CONNECT, so {@code /user/queue/...}
+ * destinations resolve locally and, with the broker relay, across nodes.
+ * The user only comes from a valid, unrevoked bearer token in the
+ * {@code Authorization} connect header; without one the session stays
+ * anonymous and can only use the public destinations.
+ */
+@Component
+public class StompPrincipalInterceptor implements ChannelInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(StompPrincipalInterceptor.class);
+
+    private final JwtService jwtService;
+    private final TokenRevocationService tokenRevocationService;
+    private final UserDirectory userDirectory;
+
+    public StompPrincipalInterceptor(JwtService jwtService, TokenRevocationService tokenRevocationService,
+                                     UserDirectory userDirectory) {
+        this.jwtService = jwtService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.userDirectory = userDirectory;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.CONNECT || accessor.getUser() != null) {
+            return message;
+        }
+        String username = fromToken(accessor.getFirstNativeHeader("Authorization"));
+        if (username != null) {
+            accessor.setUser(new StompPrincipal(username));
+            logger.debug("STOMP session {} connected as {}", accessor.getSessionId(), username);
+        }
+        return message;
+    }
+
+    private String fromToken(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return null;
+        }
+        try {
+            Claims claims = jwtService.extractAllClaims(authHeader.substring(7));
+            if (tokenRevocationService.isRevoked(claims.getId())) {
+                logger.warn("Ignoring revoked JWT token {} on STOMP CONNECT", claims.getId());
+                return null;
+            }
+            return userDirectory.usernameOf(jwtService.extractUserId(claims));
+        } catch (Exception e) {
+            logger.warn("Ignoring invalid JWT token on STOMP CONNECT: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    record StompPrincipal(String name) implements Principal {
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+}
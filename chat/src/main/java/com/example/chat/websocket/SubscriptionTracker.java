@@ -0,0 +1,113 @@
+package com.example.chat.websocket;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Counts subscribers per destination. Clients subscribe without a user principal
+ * (e.g. {@code /user/alice/queue/private} literally), so the
+ * {@link org.springframework.messaging.simp.user.SimpUserRegistry} cannot see them.
+ */
+@Component
+public class SubscriptionTracker {
+
+    // /user/<name>/... but not the principal-relative /user/queue/... form
+    private static final Pattern USER_DESTINATION = Pattern.compile("^/user/(?!queue/|topic/)[^/]+/");
+
+    private final Map<String, Map<String, String>> subscriptionsBySession = new ConcurrentHashMap<>();
+    // merge and computeIfPresent run atomically per key, so a count reaching 0 is removed
+    // in the same step and a concurrent subscribe starts over at 1 instead of being lost
+    private final Map<String, Integer> subscribersByDestination = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        String destination = accessor.getDestination();
+        if (sessionId == null || subscriptionId == null || destination == null) {
+            return;
+        }
+        String previous = subscriptionsBySession.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                .put(subscriptionId, destination);
+        if (previous != null) {
+            decrement(previous);
+        }
+        subscribersByDestination.merge(destination, 1, Integer::sum);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = subscriptionsBySession.get(accessor.getSessionId());
+        if (subscriptions != null && accessor.getSubscriptionId() != null) {
+            String destination = subscriptions.remove(accessor.getSubscriptionId());
+            if (destination != null) {
+                decrement(destination);
+            }
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = subscriptionsBySession.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::decrement);
+        }
+    }
+
+    public int getSubscriberCount(String destination) {
+        return subscribersByDestination.getOrDefault(destination, 0);
+    }
+
+    public int getDestinationCount() {
+        return subscribersByDestination.size();
+    }
+
+    public int getTrackedSessionCount() {
+        return subscriptionsBySession.size();
+    }
+
+    /**
+     * The busiest destinations. Per-user destinations are reported together
+     * as {@code /user/*}{@code /...}, so user names do not leave the node.
+     */
+    public Map<String, Integer> getTopDestinations(int limit) {
+        Map<String, Integer> redacted = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : subscribersByDestination.entrySet()) {
+            redacted.merge(redact(entry.getKey()), entry.getValue(), Integer::sum);
+        }
+        // bounded min-heap keeps this O(n log limit) however many destinations exist
+        PriorityQueue<Map.Entry<String, Integer>> heap = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<String, Integer> entry : redacted.entrySet()) {
+            heap.offer(entry);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        Map<String, Integer> top = new LinkedHashMap<>();
+        heap.stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+
+    private static String redact(String destination) {
+        return USER_DESTINATION.matcher(destination).replaceFirst("/user/*/");
+    }
+
+    private void decrement(String destination) {
+        subscribersByDestination.computeIfPresent(destination, (d, count) -> count > 1 ? count - 1 : null);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.chat.websocket;
+
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+/**
+ * {@link SubProtocolWebSocketHandler} that publishes the buffering decorator it
+ * creates for each session to the {@link WebSocketSessionRegistry} and records
+ * inbound activity for the {@link IdleSessionReaper}.
+ */
+public class TrackingSubProtocolWebSocketHandler extends SubProtocolWebSocketHandler {
+
+    private final WebSocketSessionRegistry sessionRegistry;
+
+    public TrackingSubProtocolWebSocketHandler(MessageChannel clientInboundChannel,
+                                               SubscribableChannel clientOutboundChannel,
+                                               WebSocketSessionRegistry sessionRegistry) {
+        super(clientInboundChannel, clientOutboundChannel);
+        this.sessionRegistry = sessionRegistry;
+    }
+
+    @Override
+    protected WebSocketSession decorateSession(WebSocketSession session) {
+        WebSocketSession decorated = super.decorateSession(session);
+        if (decorated instanceof ConcurrentWebSocketSessionDecorator concurrentSession) {
+            sessionRegistry.register(concurrentSession);
+        }
+        return decorated;
+    }
+
+    @Override
+    public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+        sessionRegistry.inboundReceived(session.getId());
+        super.handleMessage(session, message);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        try {
+            super.afterConnectionClosed(session, closeStatus);
+        } finally {
+            sessionRegistry.unregister(session.getId());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.chat.websocket;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the send-buffering decorator of every open WebSocket/SockJS session so
+ * that per-session buffered bytes can be read without going through the broker,
+ * along with when each session last sent anything (heartbeats included).
+ */
+@Component
+public class WebSocketSessionRegistry {
+
+    private final Map<String, ConcurrentWebSocketSessionDecorator> sessions = new ConcurrentHashMap<>();
+    // System.nanoTime() of the last inbound frame; updated in place so frames do not allocate
+    private final Map<String, AtomicLong> lastInbound = new ConcurrentHashMap<>();
+
+    void register(ConcurrentWebSocketSessionDecorator session) {
+        lastInbound.put(session.getId(), new AtomicLong(System.nanoTime()));
+        sessions.put(session.getId(), session);
+    }
+
+    void unregister(String sessionId) {
+        sessions.remove(sessionId);
+        lastInbound.remove(sessionId);
+    }
+
+    void inboundReceived(String sessionId) {
+        AtomicLong last = lastInbound.get(sessionId);
+        if (last != null) {
+            last.set(System.nanoTime());
+        }
+    }
+
+    /**
+     * @return nanoseconds since the session last sent a frame, or 0 if it is not registered
+     */
+    public long nanosSinceInbound(String sessionId, long now) {
+        AtomicLong last = lastInbound.get(sessionId);
+        return last != null ? now - last.get() : 0;
+    }
+
+    public ConcurrentWebSocketSessionDecorator get(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    public Collection<ConcurrentWebSocketSessionDecorator> getSessions() {
+        return Collections.unmodifiableCollection(sessions.values());
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public static WebSocketSession unwrap(WebSocketSession session) {
+        return session instanceof ConcurrentWebSocketSessionDecorator decorator ? decorator.getLastSession() : session;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.chat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@link StartupBudgetTest} for the {@code fast-startup} build: starts the
+ * extracted jar with its AOT bean definitions and CDS archive in a new JVM and
+ * measures up to the first accepted STOMP connection. The default budget is the
+ * 11-13 s this build takes to refresh the context, plus the web server and broker
+ * starting and some room for a slower machine; tighten it with
+ * {@code -Dstartup.fastBudgetMs=...}.
+ *
+ * <p>Runs after packaging with {@code ./mvnw -Pfast-startup verify}.
+ */
+@Tag("startup")
+class FastStartupBudgetTest {
+
+    private static final long BUDGET_MS = Long.getLong("startup.fastBudgetMs", 20_000L);
+
+    private Process app;
+
+    @AfterEach
+    void stop() throws Exception {
+        if (app != null) {
+            app.destroy();
+            if (!app.waitFor(30, TimeUnit.SECONDS)) {
+                app.destroyForcibly();
+            }
+        }
+    }
+
+    @Test
+    void firstStompConnectionIsAcceptedWithinBudget() throws Exception {
+        Path appDir = Path.of(System.getProperty("startup.appDir", "target/app"));
+        assertThat(appDir.resolve("application.jsa")).as("CDS archive from the fast-startup build").exists();
+        Path jar;
+        try (Stream<Path> files = Files.list(appDir)) {
+            jar = files.filter(file -> file.getFileName().toString().endsWith("-exec.jar")).findFirst().orElseThrow();
+        }
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        long start = System.nanoTime();
+        app = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-XX:SharedArchiveFile=application.jsa", "-Dspring.aot.enabled=true",
+                "-jar", jar.getFileName().toString(),
+                "--server.port=" + port,
+                "--spring.jpa.show-sql=false",
+                "--jwt.revocation.snapshot-path=startup-budget/revoked-tokens.bin",
+                "--chat.attachments.store-path=startup-budget/attachments")
+                .directory(appDir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(appDir.resolve("startup-budget.log").toFile())
+                .start();
+
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        StompSession session = null;
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(BUDGET_MS);
+        while (session == null && System.nanoTime() < deadline && app.isAlive()) {
+            try {
+                session = client.connectAsync("ws://localhost:" + port + "/ws/websocket",
+                        new StompSessionHandlerAdapter() {}).get(1, TimeUnit.SECONDS);
+            } catch (Exception notUpYet) {
+                Thread.sleep(100);
+            }
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        client.stop();
+
+        assertThat(session).as("STOMP connection within %d ms, see %s", BUDGET_MS,
+                appDir.resolve("startup-budget.log")).isNotNull();
+        session.disconnect();
+        assertThat(elapsedMs).as("ms from launch to first STOMP connection").isLessThan(BUDGET_MS);
+    }
+}
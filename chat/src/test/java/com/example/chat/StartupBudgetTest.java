@@ -0,0 +1,68 @@
+package com.example.chat;
+
+import com.example.chat.metrics.StartupMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.startup.StartupEndpoint;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Starts a fresh context and holds it to a budget measured up to the first
+ * accepted STOMP connection. This is the plain JVM start, without AOT or CDS,
+ * inside an already warm test JVM; the default leaves room for a slow CI
+ * machine, tighten it with {@code -Dstartup.budgetMs=...}. The fast-startup
+ * build has its own, tighter budget in {@link FastStartupBudgetTest}.
+ */
+class StartupBudgetTest {
+
+    private static final long BUDGET_MS = Long.getLong("startup.budgetMs", 60_000L);
+
+    private ConfigurableApplicationContext context;
+
+    @AfterEach
+    void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    void firstStompConnectionIsAcceptedWithinBudget() throws Exception {
+        long start = System.nanoTime();
+        context = new SpringApplicationBuilder(ChatApplication.class)
+                .applicationStartup(new BufferingApplicationStartup(4096))
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:startup-budget",
+                        "--spring.jpa.show-sql=false",
+                        "--jwt.revocation.snapshot-path=target/startup-budget/revoked-tokens.bin",
+                        "--chat.attachments.store-path=target/startup-budget/attachments",
+                        "--logging.level.com.example.chat=INFO",
+                        "--logging.level.org.springframework.security=INFO");
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        StompSession session = client.connectAsync("ws://localhost:" + port + "/ws/websocket",
+                new StompSessionHandlerAdapter() {}).get(10, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        session.disconnect();
+        client.stop();
+
+        assertThat(elapsedMs).as("ms from run() to first STOMP connection").isLessThan(BUDGET_MS);
+        assertThat(context.getBean(StartupMetrics.class).getFirstConnectMillis()).isNotNegative();
+        assertThat(context.getBean(StartupEndpoint.class).startupSnapshot().getTimeline().getEvents())
+                .extracting(StartupTimeline.TimelineEvent::getStartupStep)
+                .anySatisfy(step -> assertThat(step.getName()).isEqualTo("spring.context.refresh"));
+    }
+}
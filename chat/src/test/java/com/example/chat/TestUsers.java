@@ -0,0 +1,25 @@
+package com.example.chat;
+
+import com.example.chat.model.User;
+import com.example.chat.repo.UserRepo;
+
+/** Users for tests that authenticate with a generated token rather than by logging in. */
+public final class TestUsers {
+
+    private TestUsers() {
+    }
+
+    public static User create(UserRepo userRepo, String username) {
+        return userRepo.save(user(username));
+    }
+
+    /** An unsaved user, for tests that save many at once. */
+    public static User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        // never used for login, so skip the BCrypt cost
+        user.setPassword("n/a");
+        return user;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.chat.controller;
+
+import com.example.chat.TestUsers;
+import com.example.chat.dto.UploadStatusDTO;
+import com.example.chat.jwt.JwtService;
+import com.example.chat.model.ChatMessage;
+import com.example.chat.repo.UserRepo;
+import com.example.chat.service.AttachmentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "chat.attachments.store-path=target/test-attachments")
+class AttachmentControllerTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private ChatController chatController;
+
+    @Autowired
+    private AttachmentService attachmentService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @Test
+    void resumableUploadAndRangedDownload() throws Exception {
+        String token = jwtService.generateToken(TestUsers.create(userRepo, "attach0"));
+        byte[] file = new byte[300_000];
+        ThreadLocalRandom.current().nextBytes(file);
+
+        UploadStatusDTO started = startUpload(token, file.length);
+        assertThat(started.getOffset()).isZero();
+
+        UploadStatusDTO first = putChunk(token, started.getUploadId(), 0, Arrays.copyOfRange(file, 0, 100_000), 200);
+        assertThat(first.getOffset()).isEqualTo(100_000);
+
+        // A retried chunk for the wrong offset tells the client where to resume
+        UploadStatusDTO conflict = putChunk(token, started.getUploadId(), 0, Arrays.copyOfRange(file, 0, 100_000), 409);
+        assertThat(conflict.getOffset()).isEqualTo(100_000);
+
+        UploadStatusDTO done = putChunk(token, started.getUploadId(), 100_000,
+                Arrays.copyOfRange(file, 100_000, file.length), 201);
+        Long attachmentId = done.getAttachment().getId();
+        assertThat(done.getAttachment().getSize()).isEqualTo(file.length);
+
+        HttpResponse<byte[]> full = http.send(get("/api/attachments/" + attachmentId, token).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(full.statusCode()).isEqualTo(200);
+        assertThat(full.body()).isEqualTo(file);
+
+        HttpResponse<byte[]> partial = http.send(get("/api/attachments/" + attachmentId, token)
+                .header("Range", "bytes=1000-1999").build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(partial.statusCode()).isEqualTo(206);
+        assertThat(partial.headers().firstValue("Content-Range")).hasValue("bytes 1000-1999/" + file.length);
+        assertThat(partial.body()).isEqualTo(Arrays.copyOfRange(file, 1000, 2000));
+
+        HttpResponse<byte[]> unsatisfiable = http.send(get("/api/attachments/" + attachmentId, token)
+                .header("Range", "bytes=" + file.length + "-").build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(unsatisfiable.statusCode()).isEqualTo(416);
+
+        // Same bytes again: new attachment, same blob
+        UploadStatusDTO again = startUpload(token, file.length);
+        UploadStatusDTO duplicate = putChunk(token, again.getUploadId(), 0, file, 201);
+        assertThat(duplicate.getAttachment().getId()).isNotEqualTo(attachmentId);
+        assertThat(duplicate.getAttachment().getSha256()).isEqualTo(done.getAttachment().getSha256());
+    }
+
+    @Test
+    void onlyTheUploaderAndRecipientsCanReadAnAttachment() throws Exception {
+        String senderToken = jwtService.generateToken(TestUsers.create(userRepo, "attach1"));
+        String recipientToken = jwtService.generateToken(TestUsers.create(userRepo, "attach2"));
+        String strangerToken = jwtService.generateToken(TestUsers.create(userRepo, "attach3"));
+        byte[] file = new byte[1000];
+        ThreadLocalRandom.current().nextBytes(file);
+
+        UploadStatusDTO started = startUpload(senderToken, file.length);
+        assertThat(status(get("/api/attachments/uploads/" + started.getUploadId(), strangerToken))).isEqualTo(404);
+        Long attachmentId = putChunk(senderToken, started.getUploadId(), 0, file, 201).getAttachment().getId();
+        String download = "/api/attachments/" + attachmentId;
+
+        assertThat(status(get(download, recipientToken))).isEqualTo(404);
+        ChatMessage message = new ChatMessage();
+        message.setSender("attach1");
+        message.setReceiver("attach2");
+        message.setAttachmentId(attachmentId);
+        chatController.sendPrivateMessage(message, null);
+
+        assertThat(status(get(download, recipientToken))).isEqualTo(200);
+        assertThat(status(get(download + "/meta", recipientToken))).isEqualTo(200);
+        assertThat(status(get(download, strangerToken))).isEqualTo(404);
+        assertThat(status(get(download + "/meta", strangerToken))).isEqualTo(404);
+        assertThat(status(get(download, null))).isEqualTo(403);
+    }
+
+    @Test
+    void abandonedUploadIsDroppedWithItsPartFile() throws Exception {
+        String token = jwtService.generateToken(TestUsers.create(userRepo, "attach4"));
+        UploadStatusDTO started = startUpload(token, 2000);
+        putChunk(token, started.getUploadId(), 0, new byte[1000], 200);
+        Path part = Path.of("target/test-attachments/uploads", started.getUploadId() + ".part");
+        assertThat(part).exists();
+
+        // 23 hours after the last chunk is still within the default TTL, two days is not
+        assertThat((Integer) ReflectionTestUtils.invokeMethod(attachmentService, "removeIdleUploads",
+                System.nanoTime() + TimeUnit.HOURS.toNanos(23))).isZero();
+        assertThat((Integer) ReflectionTestUtils.invokeMethod(attachmentService, "removeIdleUploads",
+                System.nanoTime() + TimeUnit.DAYS.toNanos(2))).isEqualTo(1);
+
+        assertThat(Files.exists(part)).isFalse();
+        assertThat(status(get("/api/attachments/uploads/" + started.getUploadId(), token))).isEqualTo(404);
+    }
+
+    @Test
+    void onlyTypesThatCannotRunScriptAreShownInline() throws Exception {
+        String token = jwtService.generateToken(TestUsers.create(userRepo, "attach5"));
+        byte[] page = "<script>alert(document.cookie)</script>".getBytes(StandardCharsets.UTF_8);
+
+        for (String contentType : new String[] {"text/html", "image/svg+xml", "IMAGE/PNG; name=x"}) {
+            HttpResponse<String> started = postUpload(token, page.length, contentType);
+            assertThat(started.statusCode()).isEqualTo(201);
+            String uploadId = objectMapper.readValue(started.body(), UploadStatusDTO.class).getUploadId();
+            Long attachmentId = putChunk(token, uploadId, 0, page, 201).getAttachment().getId();
+
+            HttpResponse<byte[]> download = http.send(get("/api/attachments/" + attachmentId, token).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            assertThat(download.headers().firstValue("X-Content-Type-Options")).hasValue("nosniff");
+            assertThat(download.headers().firstValue("Content-Disposition")).hasValueSatisfying(disposition ->
+                    assertThat(disposition).startsWith(contentType.startsWith("IMAGE/PNG") ? "inline" : "attachment"));
+        }
+        assertThat(postUpload(token, page.length, "not a type").statusCode()).isEqualTo(400);
+        assertThat(postUpload(token, page.length, "image/*").statusCode()).isEqualTo(400);
+    }
+
+    private UploadStatusDTO startUpload(String token, long size) throws Exception {
+        HttpResponse<String> response = postUpload(token, size, null);
+        assertThat(response.statusCode()).isEqualTo(201);
+        return objectMapper.readValue(response.body(), UploadStatusDTO.class);
+    }
+
+    private HttpResponse<String> postUpload(String token, long size, String contentType) throws Exception {
+        String query = "fileName=photo.bin&size=" + size;
+        if (contentType != null) {
+            query += "&contentType=" + URLEncoder.encode(contentType, StandardCharsets.UTF_8);
+        }
+        return http.send(HttpRequest.newBuilder(uri("/api/attachments/uploads?" + query))
+                .header("Authorization", "Bearer " + token)
+                .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private UploadStatusDTO putChunk(String token, String uploadId, long offset, byte[] chunk, int expectedStatus)
+            throws Exception {
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(
+                        uri("/api/attachments/uploads/" + uploadId + "?offset=" + offset))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/octet-stream")
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(chunk)).build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(expectedStatus);
+        return objectMapper.readValue(response.body(), UploadStatusDTO.class);
+    }
+
+    private int status(HttpRequest.Builder request) throws Exception {
+        return http.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private HttpRequest.Builder get(String path, String token) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(path)).GET();
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return request;
+    }
+
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.chat.controller;
+
+import com.example.chat.TestUsers;
+import com.example.chat.jwt.JwtService;
+import com.example.chat.model.ChatMessage;
+import com.example.chat.model.User;
+import com.example.chat.presence.PresenceRegistry;
+import com.example.chat.repo.ChatMessageRepo;
+import com.example.chat.repo.UserRepo;
+import com.example.chat.service.UserDirectory;
+import com.example.chat.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ConditionalGetTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private ChatMessageRepo chatMessageRepo;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
+    @Autowired
+    private ChatController chatController;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @Test
+    void historyIsNotModifiedUntilTheConversationChanges() throws Exception {
+        String token = jwtService.generateToken(TestUsers.create(userRepo, "etag-alice"));
+        TestUsers.create(userRepo, "etag-bob");
+        sendPrivate("etag-alice", "etag-bob", "first");
+        String path = "/api/messages/private?user1=etag-alice&user2=etag-bob";
+
+        assertThat(get(path, null, null).statusCode()).isEqualTo(403);
+        assertThat(get("/api/messages/private?user1=etag-bob&user2=etag-carol", null, token).statusCode())
+                .isEqualTo(403);
+
+        HttpResponse<String> full = get(path, null, token);
+        assertThat(full.statusCode()).isEqualTo(200);
+        assertThat(full.body()).contains("first");
+        assertThat(full.headers().firstValue("Cache-Control")).hasValue("no-cache, private");
+        String etag = full.headers().firstValue("ETag").orElseThrow();
+
+        // Written behind the versioning's back: a 304 proves the database was not read
+        ChatMessage unversioned = new ChatMessage();
+        unversioned.setSender("etag-alice");
+        unversioned.setReceiver("etag-bob");
+        unversioned.setContent("unseen");
+        unversioned.setMessageType(ChatMessage.MessageType.PRIVATE_MESSAGE);
+        unversioned.setTimestamp(LocalDateTime.now());
+        userDirectory.assignIds(unversioned);
+        chatMessageRepo.save(unversioned);
+
+        HttpResponse<String> cached = get(path, etag, token);
+        assertThat(cached.statusCode()).isEqualTo(304);
+        assertThat(cached.body()).isEmpty();
+        assertThat(cached.headers().firstValue("ETag")).hasValue(etag);
+        assertThat(cached.headers().firstValue("Cache-Control")).hasValue("no-cache, private");
+
+        sendPrivate("etag-bob", "etag-alice", "second");
+        HttpResponse<String> changed = get(path, etag, token);
+        assertThat(changed.statusCode()).isEqualTo(200);
+        assertThat(changed.body()).contains("first", "unseen", "second");
+        assertThat(changed.headers().firstValue("ETag")).isPresent().get().isNotEqualTo(etag);
+
+        assertThat(meterRegistry.get("chat.http.conditional")
+                .tags("resource", "history", "outcome", "not_modified").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("chat.http.conditional")
+                .tags("resource", "history", "outcome", "modified").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void onlineUsersAndCurrentUserFollowPresenceAndUserVersions() throws Exception {
+        User carol = TestUsers.create(userRepo, "etag-carol");
+        String token = jwtService.generateToken(carol);
+
+        HttpResponse<String> online = get("/auth/online-users", null, null);
+        String onlineTag = online.headers().firstValue("ETag").orElseThrow();
+        assertThat(get("/auth/online-users", onlineTag, null).statusCode()).isEqualTo(304);
+        presenceRegistry.sessionOpened("etag-session", "etag-carol");
+        HttpResponse<String> afterJoin = get("/auth/online-users", onlineTag, null);
+        assertThat(afterJoin.statusCode()).isEqualTo(200);
+        assertThat(afterJoin.body()).contains("etag-carol");
+        presenceRegistry.sessionClosed("etag-session");
+
+        HttpResponse<String> me = get("/auth/current-user", null, token);
+        assertThat(me.statusCode()).isEqualTo(200);
+        String userTag = me.headers().firstValue("ETag").orElseThrow();
+        assertThat(get("/auth/current-user", userTag, token).statusCode()).isEqualTo(304);
+        userService.setUserOnlineStatus("etag-carol", true);
+        HttpResponse<String> afterStatus = get("/auth/current-user", userTag, token);
+        assertThat(afterStatus.statusCode()).isEqualTo(200);
+        assertThat(afterStatus.body()).contains("\"isOnline\":true");
+    }
+
+    private HttpResponse<String> get(String path, String ifNoneMatch, String token) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET();
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void sendPrivate(String sender, String receiver, String content) {
+        ChatMessage message = new ChatMessage();
+        message.setSender(sender);
+        message.setReceiver(receiver);
+        message.setContent(content);
+        chatController.sendPrivateMessage(message, null);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.chat.jwt;
+
+import com.example.chat.TestUsers;
+import com.example.chat.repo.UserRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "jwt.revocation.snapshot-path=target/test-revoked-tokens.bin")
+class RevokedTokenTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private JwtService jwtService;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @Test
+    void apiRejectsATokenAfterLogout() throws Exception {
+        String token = jwtService.generateToken(TestUsers.create(userRepo, "revoked-alice"));
+
+        assertThat(send(HttpRequest.newBuilder(uri("/api/inbox")).GET(), token)).isEqualTo(200);
+        assertThat(send(HttpRequest.newBuilder(uri("/auth/logout")).POST(HttpRequest.BodyPublishers.noBody()), token))
+                .isEqualTo(200);
+
+        assertThat(send(HttpRequest.newBuilder(uri("/api/inbox")).GET(), token)).isEqualTo(403);
+        assertThat(send(HttpRequest.newBuilder(uri("/api/messages/private?user2=revoked-bob")).GET(), token))
+                .isEqualTo(403);
+    }
+
+    private int send(HttpRequest.Builder request, String token) throws Exception {
+        return http.send(request.header("Authorization", "Bearer " + token).build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
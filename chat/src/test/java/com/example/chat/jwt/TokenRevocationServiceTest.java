@@ -0,0 +1,75 @@
+package com.example.chat.jwt;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenRevocationServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<TokenRevocationService> services = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(TokenRevocationService::shutdown);
+    }
+
+    @Test
+    void revokedTokensAreRejectedUntilTheyExpire() {
+        TokenRevocationService service = newService();
+        long now = System.currentTimeMillis();
+
+        service.revoke("active", now + 60_000);
+        service.revoke("already-expired", now - 1);
+
+        assertThat(service.isRevoked("active")).isTrue();
+        assertThat(service.isRevoked("already-expired")).isFalse();
+        assertThat(service.isRevoked("never-revoked")).isFalse();
+        assertThat(service.isRevoked(null)).isFalse();
+    }
+
+    @Test
+    void expiredEntriesArePurged() throws Exception {
+        TokenRevocationService service = newService();
+        service.revoke("short-lived", System.currentTimeMillis() + 50);
+        service.revoke("long-lived", System.currentTimeMillis() + 60_000);
+
+        Thread.sleep(100);
+        service.maintain();
+
+        assertThat(service.size()).isEqualTo(1);
+        assertThat(service.isRevoked("short-lived")).isFalse();
+        assertThat(service.isRevoked("long-lived")).isTrue();
+    }
+
+    @Test
+    void revocationsSurviveRestart() {
+        TokenRevocationService first = newService();
+        first.revoke("persisted", System.currentTimeMillis() + 60_000);
+        first.shutdown();
+
+        TokenRevocationService second = newService();
+
+        assertThat(second.isRevoked("persisted")).isTrue();
+    }
+
+    private TokenRevocationService newService() {
+        TokenRevocationService service = new TokenRevocationService();
+        ReflectionTestUtils.setField(service, "snapshotPath", tempDir.resolve("revoked.bin").toString());
+        ReflectionTestUtils.setField(service, "expectedRevocations", 1000);
+        ReflectionTestUtils.setField(service, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(service, "maintenanceIntervalMs", 60_000L);
+        service.init();
+        services.add(service);
+        return service;
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.chat.load;
+
+import com.example.chat.jwt.JwtService;
+import com.example.chat.model.ChatMessage;
+import com.example.chat.repo.UserRepo;
+import com.example.chat.websocket.SubscriptionTracker;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Sends bursts of group messages one frame per message ({@code /app/chat.send})
+ * and as a single {@code /app/chat.sendBatch} frame, at several burst sizes, and
+ * reports frames/sec, messages/sec and per-message latency as seen by the
+ * receivers. Written to {@code target/batch-burst-report.json}.
+ *
+ * <p>Run with {@code ./mvnw test -Pload -Dtest=BatchBurstLoadTest}. Knobs:
+ * {@code load.burstSizes} (default {@code 1,10,100}), {@code load.bursts},
+ * {@code load.receivers}, and {@code load.coalesce} to switch on outbound
+ * coalescing for the run.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.com.example.chat=WARN",
+        "logging.level.com.example.chat.load=INFO", // the reports
+        "logging.level.org.springframework.security=WARN",
+        "chat.websocket.coalesce.enabled=${load.coalesce:false}"
+})
+class BatchBurstLoadTest {
+
+    private final int[] burstSizes = Arrays.stream(System.getProperty("load.burstSizes", "1,10,100").split(","))
+            .map(String::trim).mapToInt(Integer::parseInt).toArray();
+    private final int bursts = Integer.getInteger("load.bursts", 20);
+    private final int receiverCount = Integer.getInteger("load.receivers", 10);
+    private final boolean coalesce = Boolean.getBoolean("load.coalesce");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SubscriptionTracker subscriptionTracker;
+
+    private final List<StompSession> sessions = new ArrayList<>();
+    private WebSocketStompClient stompClient;
+
+    @AfterEach
+    void tearDown() {
+        sessions.stream().filter(StompSession::isConnected).forEach(StompSession::disconnect);
+        if (stompClient != null) {
+            stompClient.stop();
+        }
+    }
+
+    @Test
+    void batchedFramesAtSeveralBurstSizes() throws Exception {
+        String sender = LoadFixtures.createUsers(userRepo, "burst-", 1).get(0);
+        stompClient = LoadFixtures.newStompClient(objectMapper);
+        String url = "ws://localhost:" + port + "/ws/websocket";
+
+        List<Receiver> receivers = new ArrayList<>();
+        for (int i = 0; i < receiverCount; i++) {
+            receivers.add(new Receiver(connect(url, new StompHeaders())));
+        }
+        // batches are only accepted from the session's own user
+        StompHeaders senderHeaders = new StompHeaders();
+        senderHeaders.add("Authorization",
+                "Bearer " + jwtService.generateToken(userRepo.findByUsername(sender).orElseThrow()));
+        StompSession senderSession = connect(url, senderHeaders);
+        await().atMost(30, TimeUnit.SECONDS)
+                .until(() -> subscriptionTracker.getSubscriberCount("/topic/group") >= receiverCount);
+
+        List<Map<String, Object>> runs = new ArrayList<>();
+        for (int burstSize : burstSizes) {
+            for (boolean batched : new boolean[]{false, true}) {
+                Map<String, Object> run = runBursts(senderSession, sender, receivers, burstSize, batched);
+                runs.add(run);
+                if (batched && !coalesce) {
+                    // one frame per burst per receiver, whatever the burst size
+                    assertThat((long) run.get("frames")).isEqualTo((long) bursts * receiverCount);
+                }
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("receivers", receiverCount);
+        report.put("burstsPerRun", bursts);
+        report.put("coalesce", coalesce);
+        report.put("runs", runs);
+        LoadFixtures.writeReport(objectMapper, "batch-burst-report", report);
+    }
+
+    private Map<String, Object> runBursts(StompSession senderSession, String sender, List<Receiver> receivers,
+                                          int burstSize, boolean batched) {
+        ConcurrentHistogram latencies = new ConcurrentHistogram(TimeUnit.SECONDS.toNanos(60), 3);
+        AtomicLong frames = new AtomicLong();
+        AtomicLong messages = new AtomicLong();
+        receivers.forEach(receiver -> receiver.reset(latencies, frames, messages));
+
+        long start = System.nanoTime();
+        for (int b = 0; b < bursts; b++) {
+            long expected = (long) (b + 1) * burstSize * receivers.size();
+            List<ChatMessage> burst = new ArrayList<>(burstSize);
+            for (int i = 0; i < burstSize; i++) {
+                ChatMessage message = new ChatMessage();
+                message.setSender(sender);
+                message.setContent(LoadClient.LATENCY_MARKER + System.nanoTime() + ":" + i);
+                burst.add(message);
+            }
+            if (batched) {
+                senderSession.send("/app/chat.sendBatch", burst);
+            } else {
+                burst.forEach(message -> senderSession.send("/app/chat.send", message));
+            }
+            // bursts are spaced by their own delivery so each one is measured on its own
+            await().atMost(30, TimeUnit.SECONDS).untilAsserted(() -> assertThat(messages.get())
+                    .as("%s burst of %d", batched ? "batch" : "single", burstSize)
+                    .isGreaterThanOrEqualTo(expected));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("mode", batched ? "batch" : "single");
+        run.put("burstSize", burstSize);
+        run.put("frames", frames.get());
+        run.put("messages", messages.get());
+        run.put("framesPerSecond", frames.get() / seconds);
+        run.put("messagesPerSecond", messages.get() / seconds);
+        run.put("latencyP50Millis", latencies.getValueAtPercentile(50) / 1e6);
+        run.put("latencyP99Millis", latencies.getValueAtPercentile(99) / 1e6);
+        run.put("latencyMaxMillis", latencies.getMaxValue() / 1e6);
+        return run;
+    }
+
+    private StompSession connect(String url, StompHeaders connectHeaders) throws Exception {
+        StompSession session = stompClient.connectAsync(url, new WebSocketHttpHeaders(), connectHeaders,
+                        new StompSessionHandlerAdapter() {})
+                .get(30, TimeUnit.SECONDS);
+        sessions.add(session);
+        return session;
+    }
+
+    /**
+     * A group subscriber that accepts both single messages and arrays, counting
+     * frames and the latency-marked messages inside them.
+     */
+    private static final class Receiver implements StompFrameHandler {
+
+        private volatile ConcurrentHistogram latencies;
+        private volatile AtomicLong frames;
+        private volatile AtomicLong messages;
+
+        private Receiver(StompSession session) {
+            session.subscribe("/topic/group", this);
+        }
+
+        void reset(ConcurrentHistogram latencies, AtomicLong frames, AtomicLong messages) {
+            this.latencies = latencies;
+            this.frames = frames;
+            this.messages = messages;
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return JsonNode.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            long now = System.nanoTime();
+            JsonNode body = (JsonNode) payload;
+            int marked = 0;
+            for (JsonNode message : body.isArray() ? body : List.of(body)) {
+                String content = message.path("content").asText("");
+                if (content.startsWith(LoadClient.LATENCY_MARKER)) {
+                    int end = content.indexOf(':', LoadClient.LATENCY_MARKER.length());
+                    long sentAt = Long.parseLong(content.substring(LoadClient.LATENCY_MARKER.length(), end));
+                    latencies.recordValue(Math.max(0, now - sentAt));
+                    marked++;
+                }
+            }
+            if (marked > 0) {
+                frames.incrementAndGet();
+                messages.addAndGet(marked);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.chat.load;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Live-object class histogram through the DiagnosticCommand MXBean (the same
+ * data as {@code jcmd <pid> GC.class_histogram}); taking one forces a full GC.
+ */
+final class HeapHistogram {
+
+    record Entry(long instances, long bytes) {
+    }
+
+    private final Map<String, Entry> entries;
+
+    private HeapHistogram(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    static HeapHistogram take() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String output = (String) server.invoke(new ObjectName("com.sun.management:type=DiagnosticCommand"),
+                "gcClassHistogram", new Object[] {null}, new String[] {String[].class.getName()});
+
+        Map<String, Entry> entries = new HashMap<>();
+        for (String line : output.split("\n")) {
+            // "   1:        12345      678901  java.lang.String (java.base@21)"
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length < 4 || !parts[0].endsWith(":")) {
+                continue;
+            }
+            try {
+                entries.put(parts[3], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+            } catch (NumberFormatException ignored) {
+                // header or total line
+            }
+        }
+        return new HeapHistogram(entries);
+    }
+
+    long instances(String className) {
+        Entry entry = entries.get(className);
+        return entry != null ? entry.instances() : 0;
+    }
+
+    long bytes(String className) {
+        Entry entry = entries.get(className);
+        return entry != null ? entry.bytes() : 0;
+    }
+}
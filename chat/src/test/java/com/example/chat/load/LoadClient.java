@@ -0,0 +1,86 @@
+package com.example.chat.load;
+
+import com.example.chat.model.ChatMessage;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One simulated chat user: a STOMP session subscribed to the group topic and its
+ * own private queue. Messages it sends carry {@link System#nanoTime()} in the
+ * content so every receiver can record send-to-receive latency.
+ */
+class LoadClient {
+
+    static final String LATENCY_MARKER = "lt:";
+
+    private final String username;
+    private final StompSession session;
+
+    LoadClient(WebSocketStompClient stompClient, String url, String username, ConcurrentHistogram latencies,
+               AtomicLong received) throws Exception {
+        this.username = username;
+        this.session = stompClient.connectAsync(url, new StompSessionHandlerAdapter() {})
+                .get(30, TimeUnit.SECONDS);
+
+        StompFrameHandler handler = new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return ChatMessage.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                long now = System.nanoTime();
+                String content = ((ChatMessage) payload).getContent();
+                if (content != null && content.startsWith(LATENCY_MARKER)) {
+                    int end = content.indexOf(':', LATENCY_MARKER.length());
+                    long sentAt = Long.parseLong(content.substring(LATENCY_MARKER.length(), end));
+                    latencies.recordValue(Math.max(0, now - sentAt));
+                    received.incrementAndGet();
+                }
+            }
+        };
+        session.subscribe("/topic/group", handler);
+        session.subscribe("/user/" + username + "/queue/private", handler);
+    }
+
+    void join() {
+        ChatMessage join = new ChatMessage();
+        join.setSender(username);
+        join.setContent(" ");
+        session.send("/app/chat.adduser", join);
+    }
+
+    void sendGroup(String padding) {
+        ChatMessage message = new ChatMessage();
+        message.setSender(username);
+        message.setContent(LATENCY_MARKER + System.nanoTime() + ":" + padding);
+        session.send("/app/chat.send", message);
+    }
+
+    void sendPrivate(String receiver, String padding) {
+        ChatMessage message = new ChatMessage();
+        message.setSender(username);
+        message.setReceiver(receiver);
+        message.setContent(LATENCY_MARKER + System.nanoTime() + ":" + padding);
+        session.send("/app/chat.private", message);
+    }
+
+    boolean isConnected() {
+        return session.isConnected();
+    }
+
+    void disconnect() {
+        if (session.isConnected()) {
+            session.disconnect();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.chat.load;
+
+import com.example.chat.TestUsers;
+import com.example.chat.model.User;
+import com.example.chat.repo.UserRepo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+final class LoadFixtures {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadFixtures.class);
+
+    private LoadFixtures() {
+    }
+
+    static List<String> createUsers(UserRepo userRepo, String prefix, int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(TestUsers.user(prefix + i));
+        }
+        return userRepo.saveAll(users).stream().map(User::getUsername).toList();
+    }
+
+    static WebSocketStompClient newStompClient(ObjectMapper objectMapper) {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        // batched and coalesced frames outgrow the container's 8 KB default
+        container.setDefaultMaxTextMessageBufferSize(1024 * 1024);
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient(container));
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        client.setMessageConverter(converter);
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("load-heartbeat-");
+        scheduler.initialize();
+        client.setTaskScheduler(scheduler);
+        client.setInboundMessageSizeLimit(1024 * 1024);
+        return client;
+    }
+
+    static long usedHeapAfterGc(MemoryMXBean memory) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    static void writeReport(ObjectMapper objectMapper, String name, Map<String, Object> report) throws Exception {
+        String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report);
+        Path target = Path.of("target");
+        Files.createDirectories(target);
+        Path file = target.resolve(name + ".json");
+        Files.writeString(file, json);
+        logger.info("{} written to {}:\n{}", name, file, json);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.chat.load;
+
+/**
+ * Load parameters, overridable with {@code -Dload.<name>=value}.
+ */
+record LoadSettings(int clients, int durationSeconds, double messagesPerSecondPerClient, double privateRatio,
+                    int payloadBytes, long maxP99Millis) {
+
+    static LoadSettings fromSystemProperties() {
+        return new LoadSettings(
+                Integer.getInteger("load.clients", 50),
+                Integer.getInteger("load.durationSeconds", 10),
+                Double.parseDouble(System.getProperty("load.messagesPerSecondPerClient", "0.5")),
+                Double.parseDouble(System.getProperty("load.privateRatio", "0.5")),
+                Integer.getInteger("load.payloadBytes", 64),
+                Long.getLong("load.maxP99Millis", 0L));
+    }
+}
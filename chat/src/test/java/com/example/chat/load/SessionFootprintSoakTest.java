@@ -0,0 +1,217 @@
+package com.example.chat.load;
+
+import com.example.chat.repo.UserRepo;
+import com.example.chat.websocket.SubscriptionTracker;
+import com.example.chat.websocket.WebSocketSessionRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Ramps joined-but-idle sessions in steps, then makes them active, and fits the
+ * retained heap against the session count. Fails when one session costs more
+ * than {@code soak.maxBytesPerSession}, or when server-side session state
+ * survives the disconnect path.
+ *
+ * <p>Client and server share the JVM, so the per-session figure includes the
+ * client side as well; server-only classes are tracked separately through the
+ * class histogram. Run with {@code ./mvnw test -Psoak}.
+ */
+@Tag("soak")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.com.example.chat=WARN",
+        "logging.level.com.example.chat.load=INFO", // the reports
+        "logging.level.org.springframework.security=WARN"
+})
+class SessionFootprintSoakTest {
+
+    // one instance per open server-side session
+    private static final String[] SERVER_SESSION_CLASSES = {
+            "org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator",
+            "org.springframework.web.socket.messaging.SubProtocolWebSocketHandler$WebSocketSessionHolder",
+            "org.springframework.web.socket.adapter.standard.StandardWebSocketSession"
+    };
+
+    private final int steps = Integer.getInteger("soak.steps", 4);
+    private final int sessionsPerStep = Integer.getInteger("soak.sessionsPerStep", 100);
+    private final int activeSeconds = Integer.getInteger("soak.activeSeconds", 5);
+    private final long maxBytesPerSession = Long.getLong("soak.maxBytesPerSession", 384 * 1024L);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private WebSocketSessionRegistry sessionRegistry;
+
+    @Autowired
+    private SubscriptionTracker subscriptionTracker;
+
+    private final List<LoadClient> clients = new ArrayList<>();
+    private WebSocketStompClient stompClient;
+
+    @AfterEach
+    void tearDown() {
+        clients.forEach(LoadClient::disconnect);
+        if (stompClient != null) {
+            stompClient.stop();
+        }
+    }
+
+    @Test
+    void perSessionFootprintStaysWithinBudgetAndDisconnectReleasesEverything() throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ConcurrentHistogram latencies = new ConcurrentHistogram(TimeUnit.SECONDS.toNanos(60), 2);
+        AtomicLong received = new AtomicLong();
+        List<String> usernames = LoadFixtures.createUsers(userRepo, "soak-", steps * sessionsPerStep);
+        stompClient = LoadFixtures.newStompClient(objectMapper);
+        String url = "ws://localhost:" + port + "/ws/websocket";
+
+        // warm up one session so class loading and caches are not billed to the first step
+        LoadClient warmup = new LoadClient(stompClient, url, usernames.get(0), latencies, received);
+        warmup.join();
+        warmup.disconnect();
+        await().atMost(10, TimeUnit.SECONDS).until(() -> sessionRegistry.size() == 0);
+
+        long baselineHeap = LoadFixtures.usedHeapAfterGc(memory);
+        HeapHistogram baselineHistogram = HeapHistogram.take();
+
+        double[] sessionCounts = new double[steps + 1];
+        double[] heapSamples = new double[steps + 1];
+        heapSamples[0] = baselineHeap;
+        Map<String, Object> report = new LinkedHashMap<>();
+        List<Map<String, Object>> stepReports = new ArrayList<>();
+
+        for (int step = 1; step <= steps; step++) {
+            List<String> batch = usernames.subList((step - 1) * sessionsPerStep, step * sessionsPerStep);
+            connect(url, batch, latencies, received);
+            await().atMost(30, TimeUnit.SECONDS).until(() -> sessionRegistry.size() == clients.size());
+
+            sessionCounts[step] = clients.size();
+            heapSamples[step] = LoadFixtures.usedHeapAfterGc(memory);
+
+            Map<String, Object> stepReport = new LinkedHashMap<>();
+            stepReport.put("sessions", clients.size());
+            stepReport.put("heapBytes", (long) heapSamples[step]);
+            stepReports.add(stepReport);
+        }
+        double idleBytesPerSession = slope(sessionCounts, heapSamples);
+        HeapHistogram idleHistogram = HeapHistogram.take();
+
+        // active phase: every session sends a few private messages
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(activeSeconds);
+        try (ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients.size(); i++) {
+                LoadClient client = clients.get(i);
+                String partner = usernames.get((i + 1) % clients.size());
+                senders.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        client.sendPrivate(partner, "soak");
+                        Thread.sleep(1000);
+                    }
+                    return null;
+                });
+            }
+        }
+        Thread.sleep(1000);
+        long activeHeap = LoadFixtures.usedHeapAfterGc(memory);
+        double activeBytesPerSession = (activeHeap - baselineHeap) / (double) clients.size();
+
+        // disconnect path
+        int sessionCount = clients.size();
+        clients.forEach(LoadClient::disconnect);
+        clients.clear();
+        await().atMost(30, TimeUnit.SECONDS).until(() -> sessionRegistry.size() == 0);
+        await().atMost(10, TimeUnit.SECONDS).until(() -> subscriptionTracker.getTrackedSessionCount() == 0);
+        long heapAfterDisconnect = LoadFixtures.usedHeapAfterGc(memory);
+        HeapHistogram afterDisconnectHistogram = HeapHistogram.take();
+
+        report.put("steps", stepReports);
+        report.put("baselineHeapBytes", baselineHeap);
+        report.put("idleBytesPerSession", (long) idleBytesPerSession);
+        report.put("activeBytesPerSession", (long) activeBytesPerSession);
+        report.put("messagesReceived", received.get());
+        report.put("heapAfterDisconnectBytes", heapAfterDisconnect);
+        Map<String, Object> serverClasses = new LinkedHashMap<>();
+        for (String className : SERVER_SESSION_CLASSES) {
+            serverClasses.put(className, Map.of(
+                    "idleInstances", idleHistogram.instances(className) - baselineHistogram.instances(className),
+                    "idleBytes", idleHistogram.bytes(className) - baselineHistogram.bytes(className),
+                    "afterDisconnectInstances", afterDisconnectHistogram.instances(className)));
+        }
+        report.put("serverSessionClasses", serverClasses);
+        LoadFixtures.writeReport(objectMapper, "session-footprint-report", report);
+
+        assertThat(idleBytesPerSession).isLessThanOrEqualTo(maxBytesPerSession);
+        assertThat(activeBytesPerSession).isLessThanOrEqualTo(maxBytesPerSession);
+        assertThat(subscriptionTracker.getDestinationCount()).isZero();
+        for (String className : SERVER_SESSION_CLASSES) {
+            assertThat(afterDisconnectHistogram.instances(className))
+                    .as("%s instances left after disconnect", className)
+                    .isLessThanOrEqualTo(baselineHistogram.instances(className));
+        }
+        // whatever is left after disconnect must be well below what the sessions held
+        assertThat(heapAfterDisconnect - baselineHeap).isLessThan((long) (idleBytesPerSession * sessionCount / 2));
+    }
+
+    private void connect(String url, List<String> usernames, ConcurrentHistogram latencies, AtomicLong received)
+            throws Exception {
+        List<Future<LoadClient>> pending = new ArrayList<>();
+        try (ExecutorService connectors = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String username : usernames) {
+                pending.add(connectors.submit(() -> new LoadClient(stompClient, url, username, latencies, received)));
+            }
+        }
+        for (Future<LoadClient> future : pending) {
+            LoadClient client = future.get();
+            client.join();
+            clients.add(client);
+        }
+    }
+
+    // least-squares slope of heap over session count
+    private static double slope(double[] x, double[] y) {
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < x.length; i++) {
+            meanX += x[i];
+            meanY += y[i];
+        }
+        meanX /= x.length;
+        meanY /= y.length;
+        double numerator = 0;
+        double denominator = 0;
+        for (int i = 0; i < x.length; i++) {
+            numerator += (x[i] - meanX) * (y[i] - meanY);
+            denominator += (x[i] - meanX) * (x[i] - meanX);
+        }
+        return numerator / denominator;
+    }
+}
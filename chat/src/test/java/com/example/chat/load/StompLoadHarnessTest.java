@@ -0,0 +1,148 @@
+package com.example.chat.load;
+
+import com.example.chat.repo.UserRepo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end load run against the real server on a random localhost port.
+ * N STOMP clients join, then exchange group and private messages at a fixed
+ * rate from virtual threads. Latency, throughput and heap figures are printed
+ * and written to {@code target/load-report.json}.
+ *
+ * <p>Run with {@code ./mvnw test -Pload}; see {@link LoadSettings} for knobs.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.com.example.chat=WARN",
+        "logging.level.com.example.chat.load=INFO", // the reports
+        "logging.level.org.springframework.security=WARN"
+})
+class StompLoadHarnessTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<LoadClient> clients = new ArrayList<>();
+    private WebSocketStompClient stompClient;
+
+    @AfterEach
+    void tearDown() {
+        clients.forEach(LoadClient::disconnect);
+        if (stompClient != null) {
+            stompClient.stop();
+        }
+    }
+
+    @Test
+    void groupAndPrivateFanOut() throws Exception {
+        LoadSettings settings = LoadSettings.fromSystemProperties();
+        ConcurrentHistogram latencies = new ConcurrentHistogram(TimeUnit.SECONDS.toNanos(60), 3);
+        AtomicLong received = new AtomicLong();
+        AtomicLong sent = new AtomicLong();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        List<String> usernames = LoadFixtures.createUsers(userRepo, "load-", settings.clients());
+        stompClient = LoadFixtures.newStompClient(objectMapper);
+        String url = "ws://localhost:" + port + "/ws/websocket";
+
+        long connectStart = System.nanoTime();
+        try (ExecutorService connectors = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<LoadClient>> pending = new ArrayList<>();
+            for (String username : usernames) {
+                pending.add(connectors.submit(() -> new LoadClient(stompClient, url, username, latencies, received)));
+            }
+            for (var future : pending) {
+                clients.add(future.get());
+            }
+        }
+        clients.forEach(LoadClient::join);
+        double connectSeconds = (System.nanoTime() - connectStart) / 1e9;
+
+        long heapAfterConnect = LoadFixtures.usedHeapAfterGc(memory);
+        String padding = "x".repeat(settings.payloadBytes());
+        long intervalNanos = (long) (1e9 / settings.messagesPerSecondPerClient());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.durationSeconds());
+
+        long runStart = System.nanoTime();
+        try (ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients.size(); i++) {
+                LoadClient client = clients.get(i);
+                String partner = usernames.get((i + 1) % usernames.size());
+                senders.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    // spread the first send so clients do not fire in lock-step
+                    long next = System.nanoTime() + random.nextLong(intervalNanos);
+                    while (next < deadline) {
+                        TimeUnit.NANOSECONDS.sleep(Math.max(0, next - System.nanoTime()));
+                        if (random.nextDouble() < settings.privateRatio()) {
+                            client.sendPrivate(partner, padding);
+                        } else {
+                            client.sendGroup(padding);
+                        }
+                        sent.incrementAndGet();
+                        next += intervalNanos;
+                    }
+                    return null;
+                });
+            }
+        }
+        // let in-flight deliveries drain
+        Thread.sleep(2000);
+        double runSeconds = (System.nanoTime() - runStart) / 1e9;
+        long heapAfterRun = LoadFixtures.usedHeapAfterGc(memory);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("clients", clients.size());
+        report.put("connectSeconds", connectSeconds);
+        report.put("messagesSent", sent.get());
+        report.put("deliveriesReceived", received.get());
+        report.put("sendsPerSecond", sent.get() / runSeconds);
+        report.put("deliveriesPerSecond", received.get() / runSeconds);
+        report.put("latencyP50Millis", latencies.getValueAtPercentile(50) / 1e6);
+        report.put("latencyP99Millis", latencies.getValueAtPercentile(99) / 1e6);
+        report.put("latencyP999Millis", latencies.getValueAtPercentile(99.9) / 1e6);
+        report.put("latencyMaxMillis", latencies.getMaxValue() / 1e6);
+        // client and server share this JVM, so heap covers both sides
+        report.put("heapAfterConnectBytes", heapAfterConnect);
+        report.put("heapAfterRunBytes", heapAfterRun);
+        report.put("heapMaxBytes", memory.getHeapMemoryUsage().getMax());
+        LoadFixtures.writeReport(objectMapper, "load-report", report);
+
+        assertThat(clients).allMatch(LoadClient::isConnected);
+        assertThat(sent.get()).isPositive();
+        assertThat(received.get()).isPositive();
+        if (settings.maxP99Millis() > 0) {
+            assertThat(latencies.getValueAtPercentile(99) / 1e6).isLessThanOrEqualTo(settings.maxP99Millis());
+        }
+    }
+}
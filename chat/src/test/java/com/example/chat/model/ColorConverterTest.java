@@ -0,0 +1,42 @@
+package com.example.chat.model;
+
+import com.example.chat.repo.ChatMessageRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class ColorConverterTest {
+
+    @Autowired
+    private ChatMessageRepo chatMessageRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void historyKeepsTheSendersColor() {
+        Long id = save("#DDA00D").getId();
+        assertThat(jdbcTemplate.queryForObject("SELECT color FROM chat_messages WHERE id = ?", Integer.class, id))
+                .isEqualTo(0xDDA00D);
+        assertThat(chatMessageRepo.findById(id).orElseThrow().getColor()).isEqualTo("#DDA00D");
+
+        // lower case comes back upper case, anything but #RRGGBB is not stored
+        assertThat(chatMessageRepo.findById(save("#007bff").getId()).orElseThrow().getColor()).isEqualTo("#007BFF");
+        assertThat(chatMessageRepo.findById(save("red").getId()).orElseThrow().getColor()).isNull();
+    }
+
+    private ChatMessage save(String color) {
+        ChatMessage message = new ChatMessage();
+        message.setContent("colored");
+        message.setColor(color);
+        message.setTimestamp(LocalDateTime.now());
+        message.setMessageType(ChatMessage.MessageType.CHAT);
+        return chatMessageRepo.save(message);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.chat.model;
+
+import com.example.chat.repo.ChatMessageRepo;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "chat.content.compression.threshold-bytes=256")
+class MessageBodyConverterTest {
+
+    @Autowired
+    private ChatMessageRepo chatMessageRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void compressesLargeContentOnly() {
+        String log = "2026-01-01 INFO  [main] com.example.Service - request handled in 12ms\n".repeat(200);
+        Long large = save(log).getId();
+        Long small = save("hello").getId();
+
+        byte[] storedLarge = jdbcTemplate.queryForObject("SELECT content FROM chat_messages WHERE id = ?", byte[].class, large);
+        byte[] storedSmall = jdbcTemplate.queryForObject("SELECT content FROM chat_messages WHERE id = ?", byte[].class, small);
+        assertThat(storedLarge[0]).isEqualTo(MessageBodyConverter.DEFLATE);
+        assertThat(storedLarge.length).isLessThan(log.length() / 10);
+        assertThat(storedSmall[0]).isEqualTo(MessageBodyConverter.PLAIN);
+
+        assertThat(chatMessageRepo.findById(large).orElseThrow().getContent()).isEqualTo(log);
+        assertThat(chatMessageRepo.findById(small).orElseThrow().getContent()).isEqualTo("hello");
+    }
+
+    @Test
+    void decodesLazily() {
+        Long id = save("x".repeat(4096)).getId();
+
+        ChatMessage loaded = transactionTemplate.execute(status -> {
+            ChatMessage message = chatMessageRepo.findById(id).orElseThrow();
+            entityManager.flush();
+            return message;
+        });
+
+        assertThat(loaded.getBody().isDecoded()).isFalse();
+        assertThat(loaded.getContent()).hasSize(4096);
+        assertThat(loaded.getBody().isDecoded()).isTrue();
+    }
+
+    private ChatMessage save(String content) {
+        ChatMessage message = new ChatMessage();
+        message.setContent(content);
+        message.setTimestamp(LocalDateTime.now());
+        message.setMessageType(ChatMessage.MessageType.CHAT);
+        return chatMessageRepo.save(message);
+    }
+}
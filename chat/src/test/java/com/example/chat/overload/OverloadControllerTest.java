@@ -0,0 +1,183 @@
+package com.example.chat.overload;
+
+import com.example.chat.TestUsers;
+import com.example.chat.controller.ChatController;
+import com.example.chat.jwt.JwtService;
+import com.example.chat.model.ChatMessage;
+import com.example.chat.repo.UserRepo;
+import com.example.chat.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+// Samples are fed by the test, so the schedule is left far in the future
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "chat.overload.interval-ms=600000",
+        "chat.overload.recovery-ms=1000",
+        "chat.overload.retry-after-seconds=2"})
+class OverloadControllerTest {
+
+    private static final long RECOVERY = TimeUnit.MILLISECONDS.toNanos(1000);
+    private static final OverloadSignals QUIET = new OverloadSignals(0, 0, 0);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private OverloadController overloadController;
+
+    @Autowired
+    private ChatController chatController;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @Test
+    void shedsInStepsAndRecoversOneModeAtATime() throws Exception {
+        String token = jwtService.generateToken(TestUsers.create(userRepo, "overload-alice"));
+        TestUsers.create(userRepo, "overload-bob");
+        String history = "/api/messages/private?user2=overload-bob";
+
+        long now = System.nanoTime();
+        overloadController.update(new OverloadSignals(5000, 0, 0.5), now);
+        assertThat(overloadController.getMode()).isEqualTo(OverloadMode.REJECT_CONNECTIONS);
+
+        HttpResponse<String> handshake = get("/ws/websocket", null);
+        assertThat(handshake.statusCode()).isEqualTo(503);
+        assertThat(Long.parseLong(handshake.headers().firstValue("Retry-After").orElseThrow())).isBetween(2L, 4L);
+        HttpResponse<String> historyResponse = get(history, token);
+        assertThat(historyResponse.statusCode()).isEqualTo(503);
+        assertThat(historyResponse.headers().firstValue("Retry-After")).isPresent();
+        assertThat(chatController.handleTyping(message("overload-alice"))).isNull();
+        userService.setUserOnlineStatus("overload-alice", true);
+        assertThat(isOnlineInDatabase("overload-alice")).isFalse();
+        // the login path is shed the same way
+        userService.setUserOnlineStatusAsync("overload-bob", true);
+
+        // a dip shorter than the recovery period changes nothing
+        overloadController.update(QUIET, now += RECOVERY / 2);
+        overloadController.update(new OverloadSignals(2500, 0, 0), now += RECOVERY / 2);
+        overloadController.update(QUIET, now += RECOVERY / 2);
+        assertThat(overloadController.getMode()).isEqualTo(OverloadMode.REJECT_CONNECTIONS);
+
+        overloadController.update(QUIET, now += RECOVERY);
+        assertThat(overloadController.getMode()).isEqualTo(OverloadMode.CACHE_ONLY_HISTORY);
+        assertThat(get("/ws/websocket", null).statusCode()).isNotEqualTo(503);
+        overloadController.update(QUIET, now += RECOVERY);
+        assertThat(overloadController.getMode()).isEqualTo(OverloadMode.SKIP_PRESENCE_PERSISTENCE);
+        assertThat(get(history, token).statusCode()).isEqualTo(200);
+        assertThat(isOnlineInDatabase("overload-alice")).isFalse();
+        assertThat(isOnlineInDatabase("overload-bob")).isFalse();
+
+        overloadController.update(QUIET, now += RECOVERY);
+        assertThat(overloadController.getMode()).isEqualTo(OverloadMode.SHED_TYPING);
+        // the held-back online flag is written on the way out of SKIP_PRESENCE_PERSISTENCE
+        await().atMost(5, TimeUnit.SECONDS).until(() ->
+                isOnlineInDatabase("overload-alice") && isOnlineInDatabase("overload-bob"));
+        assertThat(chatController.handleTyping(message("overload-alice"))).isNull();
+
+        overloadController.update(QUIET, now += RECOVERY);
+        assertThat(overloadController.getMode()).isEqualTo(OverloadMode.NORMAL);
+        assertThat(chatController.handleTyping(message("overload-alice"))).isNotNull();
+
+        assertThat(meterRegistry.get("chat.overload.mode").gauge().value()).isZero();
+        assertThat(meterRegistry.get("chat.overload.transitions")
+                .tags("from", "normal", "to", "reject_connections").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("chat.overload.transitions")
+                .tags("from", "reject_connections", "to", "cache_only_history").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("chat.overload.shed").tag("mode", "reject_connections").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("chat.overload.shed").tag("mode", "shed_typing").counter().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void cacheOnlyHistoryServesTheLastCopyReadFromTheDatabase() throws Exception {
+        String token = jwtService.generateToken(TestUsers.create(userRepo, "overload-cara"));
+        TestUsers.create(userRepo, "overload-dev");
+        TestUsers.create(userRepo, "overload-eli");
+        ChatMessage message = message("overload-cara");
+        message.setReceiver("overload-dev");
+        message.setContent("read before the overload");
+        chatController.sendPrivateMessage(message, null);
+        String history = "/api/messages/private?user2=overload-dev";
+        HttpResponse<String> fromDatabase = get(history, token);
+        assertThat(fromDatabase.statusCode()).isEqualTo(200);
+
+        long now = System.nanoTime();
+        overloadController.update(new OverloadSignals(1000, 0, 0), now);
+        assertThat(overloadController.getMode()).isEqualTo(OverloadMode.CACHE_ONLY_HISTORY);
+
+        HttpResponse<String> fromCache = get(history, token);
+        assertThat(fromCache.statusCode()).isEqualTo(200);
+        assertThat(fromCache.body()).isEqualTo(fromDatabase.body()).contains("read before the overload");
+        // never read, so not cached
+        assertThat(get("/api/messages/private?user2=overload-eli", token).statusCode()).isEqualTo(503);
+
+        // a newer message makes the cached copy stale, and it is not served under the new tag
+        ChatMessage newer = message("overload-dev");
+        newer.setReceiver("overload-cara");
+        newer.setContent("sent during the overload");
+        chatController.sendPrivateMessage(newer, null);
+        assertThat(get(history, token).statusCode()).isEqualTo(503);
+
+        for (int step = 1; step <= 4; step++) {
+            overloadController.update(QUIET, now + step * RECOVERY);
+        }
+        assertThat(overloadController.getMode()).isEqualTo(OverloadMode.NORMAL);
+    }
+
+    @Test
+    void mostLoadedSignalPicksTheMode() {
+        long now = System.nanoTime();
+        overloadController.update(new OverloadSignals(0, 6, 0.5), now);
+        assertThat(overloadController.getMode()).isEqualTo(OverloadMode.SKIP_PRESENCE_PERSISTENCE);
+        overloadController.update(new OverloadSignals(250, 0, 0.92), now + 1);
+        assertThat(overloadController.getMode()).isEqualTo(OverloadMode.CACHE_ONLY_HISTORY);
+
+        for (int step = 1; step <= 4; step++) {
+            overloadController.update(QUIET, now + step * RECOVERY);
+        }
+        assertThat(overloadController.getMode()).isEqualTo(OverloadMode.NORMAL);
+    }
+
+    private HttpResponse<String> get(String path, String token) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET();
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private boolean isOnlineInDatabase(String username) {
+        return Boolean.TRUE.equals(userRepo.findByUsername(username).orElseThrow().getIsOnline());
+    }
+
+    private ChatMessage message(String sender) {
+        ChatMessage message = new ChatMessage();
+        message.setSender(sender);
+        return message;
+    }
+}
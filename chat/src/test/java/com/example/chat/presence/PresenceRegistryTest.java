@@ -0,0 +1,126 @@
+package com.example.chat.presence;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class PresenceRegistryTest {
+
+    private static final long LEASE_MS = 5_000;
+
+    private final List<PresenceRegistry> registries = new ArrayList<>();
+    private final List<PresenceTransport> transports = new ArrayList<>();
+    private final List<PresenceChangedEvent> events = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        registries.forEach(PresenceRegistry::shutdown);
+        transports.forEach(PresenceTransport::close);
+    }
+
+    @Test
+    void disconnectOnOneNodeKeepsUserOnlineWhileAnotherNodeHoldsASession() {
+        LoopbackPresenceTransport.Hub hub = new LoopbackPresenceTransport.Hub();
+        PresenceRegistry nodeA = registry("a", hub.join());
+        PresenceRegistry nodeB = registry("b", hub.join());
+
+        nodeA.sessionOpened("a-1", "alice");
+        nodeB.sessionOpened("b-1", "alice");
+        nodeB.sessionOpened("b-1", "alice"); // repeated join on the same session
+        assertThat(nodeA.getOnlineUsers()).containsExactly("alice");
+        assertThat(nodeB.getOnlineUsers()).containsExactly("alice");
+
+        assertThat(nodeB.sessionClosed("b-1")).isEqualTo("alice");
+        assertThat(nodeA.isOnline("alice")).isTrue();
+        assertThat(nodeB.isOnline("alice")).isTrue();
+
+        nodeA.sessionClosed("a-1");
+        assertThat(nodeA.getOnlineUsers()).isEmpty();
+        assertThat(nodeB.getOnlineUsers()).isEmpty();
+        assertThat(nodeB.sessionClosed("b-1")).isNull();
+    }
+
+    @Test
+    void peerRowExpiresWhenItsLeaseRunsOut() {
+        LoopbackPresenceTransport.Hub hub = new LoopbackPresenceTransport.Hub();
+        LoopbackPresenceTransport transportA = hub.join();
+        PresenceRegistry nodeA = registry("a", transportA);
+        PresenceRegistry nodeB = registry("b", hub.join());
+
+        nodeA.sessionOpened("a-1", "alice");
+        assertThat(nodeB.isOnline("alice")).isTrue();
+
+        // node a vanishes without leaving
+        transportA.close();
+        nodeB.expireLeases(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LEASE_MS) / 2);
+        assertThat(nodeB.isOnline("alice")).isTrue();
+        nodeB.expireLeases(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LEASE_MS) + 1);
+        assertThat(nodeB.isOnline("alice")).isFalse();
+        assertThat(events).contains(new PresenceChangedEvent("alice", false));
+    }
+
+    @Test
+    void staleDigestsAreIgnored() {
+        PresenceRegistry node = registry("a", new LoopbackPresenceTransport.Hub().join());
+
+        node.receive(new PresenceDigest("b", 2, Map.of("bob", 1)));
+        node.receive(new PresenceDigest("b", 1, Map.of()));
+        assertThat(node.getOnlineUsers()).containsExactly("bob");
+
+        node.receive(new PresenceDigest("b", 3, Map.of("carol", 2)));
+        assertThat(node.getOnlineUsers()).containsExactly("carol");
+        assertThat(events).containsExactly(
+                new PresenceChangedEvent("bob", true),
+                new PresenceChangedEvent("carol", true),
+                new PresenceChangedEvent("bob", false));
+    }
+
+    @Test
+    void rowsReplicateOverUdp() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        PresenceRegistry nodeA = registry("a", new UdpPresenceTransport(new InetSocketAddress("localhost", portA),
+                List.of(new InetSocketAddress("localhost", portB))));
+        PresenceRegistry nodeB = registry("b", new UdpPresenceTransport(new InetSocketAddress("localhost", portB),
+                List.of(new InetSocketAddress("localhost", portA))));
+
+        nodeA.sessionOpened("a-1", "alice");
+        nodeB.sessionOpened("b-1", "bob");
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            assertThat(nodeA.getOnlineUsers()).containsExactlyInAnyOrder("alice", "bob");
+            assertThat(nodeB.getOnlineUsers()).containsExactlyInAnyOrder("alice", "bob");
+        });
+
+        nodeB.sessionClosed("b-1");
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(nodeA.getOnlineUsers()).containsExactly("alice"));
+    }
+
+    // Heartbeats are driven by the tests, so the schedule is left far in the future
+    private PresenceRegistry registry(String nodeId, PresenceTransport transport) {
+        PresenceRegistry registry = new PresenceRegistry(transport,
+                event -> events.add((PresenceChangedEvent) event), new SimpleMeterRegistry(), nodeId, 60_000, LEASE_MS);
+        registry.start();
+        registries.add(registry);
+        transports.add(transport);
+        return registry;
+    }
+
+    private static int freePort() throws Exception {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
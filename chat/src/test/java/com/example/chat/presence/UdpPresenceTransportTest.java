@@ -0,0 +1,107 @@
+package com.example.chat.presence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UdpPresenceTransportTest {
+
+    private final List<UdpPresenceTransport> transports = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        transports.forEach(UdpPresenceTransport::close);
+    }
+
+    @Test
+    void rowLargerThanADatagramArrivesWhole() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        UdpPresenceTransport nodeA = transport(portA, portB);
+        UdpPresenceTransport nodeB = transport(portB, portA);
+        BlockingQueue<PresenceDigest> received = new LinkedBlockingQueue<>();
+        nodeB.setListener(received::add);
+
+        Map<String, Integer> sessions = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            sessions.put("user-with-a-longish-name-" + i, 1 + i % 3);
+        }
+        PresenceDigest digest = new PresenceDigest("a", 7, sessions);
+        assertThat(UdpPresenceTransport.encode(digest)).hasSizeGreaterThan(1).allSatisfy(datagram ->
+                assertThat(datagram.length).isLessThanOrEqualTo(UdpPresenceTransport.MAX_DATAGRAM_BYTES));
+
+        // Parts dropped on the way are filled in by the next heartbeat's copy of the same version
+        PresenceDigest whole = null;
+        for (int heartbeat = 0; heartbeat < 20 && whole == null; heartbeat++) {
+            nodeA.publish(digest);
+            whole = received.poll(250, TimeUnit.MILLISECONDS);
+        }
+        assertThat(whole).isEqualTo(digest);
+    }
+
+    @Test
+    void datagramsFromOtherAddressesAreIgnored() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        int portC = freePort();
+        UdpPresenceTransport stranger = transport(portC, portB);
+        UdpPresenceTransport nodeA = transport(portA, portB);
+        UdpPresenceTransport nodeB = transport(portB, portA);
+        BlockingQueue<PresenceDigest> received = new LinkedBlockingQueue<>();
+        nodeB.setListener(received::add);
+
+        stranger.publish(new PresenceDigest("c", 1, Map.of("mallory", 1)));
+        nodeA.publish(new PresenceDigest("a", 1, Map.of("alice", 1)));
+
+        // datagrams between two sockets on localhost are not reordered
+        assertThat(received.poll(5, TimeUnit.SECONDS).nodeId()).isEqualTo("a");
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    void forgedEntryCountIsRejectedBeforeAllocating() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x50524553);
+        out.writeUTF("a");
+        out.writeLong(1);
+        out.writeInt(0);
+        out.writeInt(1);
+        out.writeInt(Integer.MAX_VALUE);
+        out.writeUTF("alice");
+        out.writeInt(1);
+        byte[] datagram = bytes.toByteArray();
+
+        assertThatThrownBy(() -> UdpPresenceTransport.decode(datagram, datagram.length))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("do not fit");
+    }
+
+    private UdpPresenceTransport transport(int port, int peerPort) throws IOException {
+        UdpPresenceTransport transport = new UdpPresenceTransport(new InetSocketAddress("localhost", port),
+                List.of(new InetSocketAddress("localhost", peerPort)));
+        transports.add(transport);
+        return transport;
+    }
+
+    private static int freePort() throws Exception {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.chat.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashedTimingWheelTest {
+
+    @Test
+    void firesEveryTimerAfterItsDeadline() throws Exception {
+        int timers = 20_000;
+        Map<Long, Long> deadlines = new ConcurrentHashMap<>();
+        Map<Long, Long> firedAt = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(timers);
+
+        // 8 slots of 10ms, so delays up to 400ms also exercise multiple rounds
+        try (HashedTimingWheel wheel = new HashedTimingWheel(10, TimeUnit.MILLISECONDS, 8, "wheel-test",
+                (id, late) -> {
+                    firedAt.put(id, System.nanoTime());
+                    done.countDown();
+                })) {
+            for (long id = 0; id < timers; id++) {
+                long delay = ThreadLocalRandom.current().nextLong(400);
+                deadlines.put(id, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay));
+                wheel.schedule(id, delay, TimeUnit.MILLISECONDS);
+            }
+
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(wheel.getPendingCount()).isZero();
+        }
+
+        assertThat(firedAt).hasSize(timers);
+        for (Map.Entry<Long, Long> entry : firedAt.entrySet()) {
+            assertThat(entry.getValue()).isGreaterThanOrEqualTo(deadlines.get(entry.getKey()));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.chat.scheduler;
+
+import com.example.chat.TestUsers;
+import com.example.chat.model.ChatMessage;
+import com.example.chat.model.MessageBody;
+import com.example.chat.model.ScheduledMessage;
+import com.example.chat.repo.ChatMessageRepo;
+import com.example.chat.repo.ScheduledMessageRepo;
+import com.example.chat.repo.UserRepo;
+import com.example.chat.service.UserDirectory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest(properties = {"chat.scheduler.tick-ms=20", "chat.scheduler.retry-backoff-ms=100"})
+class MessageSchedulerTest {
+
+    private static final String FLAKY = "delivered on the third try";
+
+    @Autowired
+    private MessageScheduler messageScheduler;
+
+    @Autowired
+    private ScheduledMessageRepo scheduledMessageRepo;
+
+    @Autowired
+    private ChatMessageRepo chatMessageRepo;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
+    @Test
+    void sendsScheduledMessageAndDeletesItWhenItExpires() {
+        TestUsers.create(userRepo, "scheduler-sam");
+
+        ChatMessage draft = new ChatMessage();
+        draft.setSender("scheduler-sam");
+        draft.setContent("good morning");
+        draft.setMessageType(ChatMessage.MessageType.CHAT);
+        draft.setExpiresAt(LocalDateTime.now().plusSeconds(1));
+        userDirectory.assignIds(draft);
+        long before = chatMessageRepo.count();
+
+        Long scheduledId = messageScheduler.scheduleSend(draft, LocalDateTime.now().plusNanos(300_000_000)).getId();
+        assertThat(chatMessageRepo.count()).isEqualTo(before);
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            assertThat(chatMessageRepo.count()).isEqualTo(before + 1);
+            assertThat(scheduledMessageRepo.existsById(scheduledId)).isFalse();
+        });
+
+        // The delivered message carried an expiry, so it is removed again
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            assertThat(chatMessageRepo.count()).isEqualTo(before);
+            assertThat(scheduledMessageRepo.count()).isZero();
+        });
+    }
+
+    @Test
+    void recoversRowsLeftFromBeforeRestart() {
+        Long senderId = TestUsers.create(userRepo, "scheduler-ria").getId();
+        long before = chatMessageRepo.count();
+
+        // Written directly, as if saved by a previous run that never got to deliver it
+        ScheduledMessage pending = new ScheduledMessage();
+        pending.setKind(ScheduledMessage.Kind.SEND);
+        pending.setDueAt(LocalDateTime.now().minusMinutes(1));
+        pending.setSenderId(senderId);
+        pending.setMessageType(ChatMessage.MessageType.CHAT);
+        pending.setBody(MessageBody.of("sent while we were down"));
+        Long id = scheduledMessageRepo.save(pending).getId();
+
+        ReflectionTestUtils.setField(messageScheduler, "recoverUpTo", id);
+        messageScheduler.recover();
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            assertThat(scheduledMessageRepo.existsById(id)).isFalse();
+            assertThat(chatMessageRepo.count()).isEqualTo(before + 1);
+        });
+    }
+
+    @Test
+    void failedDeliveryIsRetriedInsteadOfDropped(@Autowired FailingListener failingListener) {
+        TestUsers.create(userRepo, "scheduler-flo");
+        failingListener.failuresLeft.set(2);
+
+        ChatMessage draft = new ChatMessage();
+        draft.setSender("scheduler-flo");
+        draft.setContent(FLAKY);
+        draft.setMessageType(ChatMessage.MessageType.CHAT);
+        userDirectory.assignIds(draft);
+        long before = chatMessageRepo.count();
+
+        Long scheduledId = messageScheduler.scheduleSend(draft, LocalDateTime.now().plusNanos(100_000_000)).getId();
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            assertThat(failingListener.failuresLeft).hasNegativeValue();
+            assertThat(scheduledMessageRepo.existsById(scheduledId)).isFalse();
+        });
+        assertThat(chatMessageRepo.count()).isEqualTo(before + 1);
+    }
+
+    // Runs ahead of ChatController and throws for the first deliveries of the flaky message
+    @TestConfiguration
+    static class FailingListener {
+
+        final AtomicInteger failuresLeft = new AtomicInteger();
+
+        @EventListener
+        @Order(Ordered.HIGHEST_PRECEDENCE)
+        public void onDue(ScheduledMessageDueEvent event) {
+            if (event.scheduledMessage().getBody() != null
+                    && FLAKY.equals(event.scheduledMessage().getBody().text())
+                    && failuresLeft.getAndDecrement() > 0) {
+                throw new IllegalStateException("broker unavailable");
+            }
+        }
+    }
+}
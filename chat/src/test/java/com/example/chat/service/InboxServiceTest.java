@@ -0,0 +1,183 @@
+package com.example.chat.service;
+
+import com.example.chat.TestUsers;
+import com.example.chat.dto.InboxEntryDTO;
+import com.example.chat.model.ChatMessage;
+import com.example.chat.repo.ChatMessageRepo;
+import com.example.chat.repo.InboxEntryRepo;
+import com.example.chat.repo.UserRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class InboxServiceTest {
+
+    @Autowired
+    private InboxService inboxService;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private ChatMessageRepo chatMessageRepo;
+
+    @Autowired
+    private InboxEntryRepo inboxEntryRepo;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Test
+    void tracksLatestMessageAndUnreadCounts() {
+        TestUsers.create(userRepo, "inbox-ann");
+        TestUsers.create(userRepo, "inbox-ben");
+        TestUsers.create(userRepo, "inbox-cat");
+
+        send("inbox-ben", "inbox-ann", "hi ann");
+        send("inbox-cat", "inbox-ann", "x".repeat(200));
+        send("inbox-ben", "inbox-ann", "are you there?");
+
+        List<InboxEntryDTO> ann = inboxService.getInbox("inbox-ann");
+        assertThat(ann).extracting(InboxEntryDTO::getPartner).containsExactly("inbox-ben", "inbox-cat");
+        assertThat(ann.get(0).getLastPreview()).isEqualTo("are you there?");
+        assertThat(ann.get(0).getUnreadCount()).isEqualTo(2);
+        assertThat(ann.get(1).getLastPreview()).hasSize(80);
+
+        List<InboxEntryDTO> ben = inboxService.getInbox("inbox-ben");
+        assertThat(ben).singleElement().satisfies(entry -> {
+            assertThat(entry.getPartner()).isEqualTo("inbox-ann");
+            assertThat(entry.getUnreadCount()).isZero();
+        });
+
+        assertThat(inboxService.markRead("inbox-ann", "inbox-ben")).isTrue();
+
+        // Same answer after falling back to the database
+        inboxService.clearCache();
+        List<InboxEntryDTO> reloaded = inboxService.getInbox("inbox-ann");
+        assertThat(reloaded).extracting(InboxEntryDTO::getPartner).containsExactly("inbox-ben", "inbox-cat");
+        assertThat(reloaded).extracting(InboxEntryDTO::getUnreadCount).containsExactly(0, 1);
+        assertThat(reloaded.get(0).getLastMessageId()).isEqualTo(ann.get(0).getLastMessageId());
+    }
+
+    @Test
+    void aMessageRecordedLateDoesNotReplaceTheLatest() {
+        TestUsers.create(userRepo, "inbox-dan");
+        TestUsers.create(userRepo, "inbox-eve");
+
+        ChatMessage earlier = save("inbox-dan", "inbox-eve", "earlier");
+        ChatMessage later = save("inbox-dan", "inbox-eve", "later");
+        inboxService.recordPrivateMessage(later);
+        inboxService.recordPrivateMessage(earlier);
+
+        assertThat(inboxService.getInbox("inbox-eve")).singleElement().satisfies(entry -> {
+            assertThat(entry.getLastMessageId()).isEqualTo(later.getId());
+            assertThat(entry.getLastPreview()).isEqualTo("later");
+            assertThat(entry.getUnreadCount()).isEqualTo(2);
+        });
+        inboxService.clearCache();
+        assertThat(inboxService.getInbox("inbox-eve")).singleElement().satisfies(entry -> {
+            assertThat(entry.getLastMessageId()).isEqualTo(later.getId());
+            assertThat(entry.getLastPreview()).isEqualTo("later");
+            assertThat(entry.getUnreadCount()).isEqualTo(2);
+        });
+    }
+
+    @Test
+    void deletingTheLatestMessageFallsBackToThePreviousOne() {
+        TestUsers.create(userRepo, "inbox-fay");
+        TestUsers.create(userRepo, "inbox-gus");
+
+        ChatMessage first = save("inbox-fay", "inbox-gus", "first");
+        inboxService.recordPrivateMessage(first);
+        ChatMessage second = save("inbox-gus", "inbox-fay", "second");
+        inboxService.recordPrivateMessage(second);
+
+        chatMessageRepo.delete(second);
+        inboxService.recordDeletion(second);
+        for (String owner : List.of("inbox-fay", "inbox-gus")) {
+            assertThat(inboxService.getInbox(owner)).singleElement().satisfies(entry -> {
+                assertThat(entry.getLastMessageId()).isEqualTo(first.getId());
+                assertThat(entry.getLastPreview()).isEqualTo("first");
+            });
+        }
+        inboxService.clearCache();
+        assertThat(inboxService.getInbox("inbox-gus")).singleElement()
+                .satisfies(entry -> assertThat(entry.getLastPreview()).isEqualTo("first"));
+
+        chatMessageRepo.delete(first);
+        inboxService.recordDeletion(first);
+        assertThat(inboxService.getInbox("inbox-fay")).isEmpty();
+        inboxService.clearCache();
+        assertThat(inboxService.getInbox("inbox-gus")).isEmpty();
+    }
+
+    @Test
+    void cacheKeepsOnlyTheMostRecentlyUsedInboxes() {
+        InboxService small = inboxService(2, "simple");
+        for (String name : List.of("inbox-hal", "inbox-ivy", "inbox-jon")) {
+            TestUsers.create(userRepo, name);
+        }
+        ChatMessage message = save("inbox-hal", "inbox-ivy", "hello");
+        small.recordPrivateMessage(message);
+        assertThat(small.cachedInboxCount()).isEqualTo(2);
+
+        // jon's inbox pushes out hal's, which is then reloaded as it was
+        assertThat(small.getInbox("inbox-jon")).isEmpty();
+        assertThat(small.cachedInboxCount()).isEqualTo(2);
+        assertThat(small.getInbox("inbox-hal")).singleElement()
+                .satisfies(entry -> assertThat(entry.getLastMessageId()).isEqualTo(message.getId()));
+        assertThat(small.cachedInboxCount()).isEqualTo(2);
+    }
+
+    @Test
+    void relayModeSeesMessagesRecordedByAnotherNode() {
+        InboxService nodeA = inboxService(10, "relay");
+        InboxService nodeB = inboxService(10, "relay");
+        TestUsers.create(userRepo, "inbox-kim");
+        TestUsers.create(userRepo, "inbox-lou");
+
+        nodeA.recordPrivateMessage(save("inbox-kim", "inbox-lou", "first"));
+        assertThat(nodeB.getInbox("inbox-lou")).singleElement()
+                .satisfies(entry -> assertThat(entry.getLastPreview()).isEqualTo("first"));
+        nodeA.recordPrivateMessage(save("inbox-kim", "inbox-lou", "second"));
+        nodeB.recordPrivateMessage(save("inbox-lou", "inbox-kim", "third"));
+
+        assertThat(nodeB.getInbox("inbox-lou")).singleElement().satisfies(entry -> {
+            assertThat(entry.getLastPreview()).isEqualTo("third");
+            assertThat(entry.getUnreadCount()).isEqualTo(2);
+        });
+        assertThat(nodeA.getInbox("inbox-kim")).singleElement().satisfies(entry -> {
+            assertThat(entry.getLastPreview()).isEqualTo("third");
+            assertThat(entry.getUnreadCount()).isEqualTo(1);
+        });
+        assertThat(nodeA.cachedInboxCount()).isZero();
+    }
+
+    private InboxService inboxService(int cacheSize, String brokerMode) {
+        return new InboxService(inboxEntryRepo, chatMessageRepo, userDirectory, readYourWrites, cacheSize, brokerMode);
+    }
+
+    private void send(String sender, String receiver, String content) {
+        inboxService.recordPrivateMessage(save(sender, receiver, content));
+    }
+
+    private ChatMessage save(String sender, String receiver, String content) {
+        ChatMessage message = new ChatMessage();
+        message.setSender(sender);
+        message.setReceiver(receiver);
+        message.setContent(content);
+        message.setTimestamp(LocalDateTime.now());
+        message.setMessageType(ChatMessage.MessageType.PRIVATE_MESSAGE);
+        userDirectory.assignIds(message);
+        return chatMessageRepo.save(message);
+    }
+}
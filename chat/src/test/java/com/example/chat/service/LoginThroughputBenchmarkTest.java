@@ -0,0 +1,83 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.LoginRequestDTO;
+import com.example.chat.dto.RegisterRequestDTO;
+import com.example.chat.repo.UserRepo;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+// Hashes LOGINS passwords, so it runs with the load tests: ./mvnw test -Pload -Dtest=LoginThroughputBenchmarkTest
+@Tag("load")
+@SpringBootTest
+class LoginThroughputBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginThroughputBenchmarkTest.class);
+
+    private static final int LOGINS = 200;
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @MockitoSpyBean
+    private UserRepo userRepo;
+
+    @Test
+    void loginBurstLooksUpEachUserOnce() throws Exception {
+        RegisterRequestDTO register = new RegisterRequestDTO();
+        register.setUsername("bench-user");
+        register.setPassword("secret");
+        register.setEmail("bench-user@example.com");
+        authenticationService.signup(register);
+        clearInvocations(userRepo);
+
+        LoginRequestDTO login = new LoginRequestDTO();
+        login.setUsername("bench-user");
+        login.setPassword("secret");
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger throttled = new AtomicInteger();
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < LOGINS; i++) {
+                futures.add(clients.submit(() -> {
+                    try {
+                        authenticationService.login(login);
+                        succeeded.incrementAndGet();
+                    } catch (LoginThrottledException e) {
+                        throttled.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        logger.info("Login throughput: {} ok, {} throttled in {} s ({} logins/s)", succeeded.get(), throttled.get(),
+                String.format("%.2f", seconds), String.format("%.1f", succeeded.get() / seconds));
+
+        assertThat(succeeded.get()).isPositive();
+        assertThat(succeeded.get() + throttled.get()).isEqualTo(LOGINS);
+        verify(userRepo, times(LOGINS)).findByUsername(anyString());
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.chat.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PasswordVerificationPoolTest {
+
+    @Test
+    void saturatedPoolRejectsInsteadOfQueueing() throws Exception {
+        PasswordVerificationPool pool = new PasswordVerificationPool(new BCryptPasswordEncoder(12), 1, 1, 10_000, 2);
+        String encoded = new BCryptPasswordEncoder(12).encode("secret");
+        AtomicInteger throttled = new AtomicInteger();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(clients.submit(() -> {
+                    try {
+                        pool.matches("secret", encoded);
+                    } catch (LoginThrottledException e) {
+                        assertThat(e.getRetryAfterSeconds()).isEqualTo(2);
+                        throttled.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertThat(throttled.get()).isPositive();
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.chat.service;
+
+import com.example.chat.TestUsers;
+import com.example.chat.controller.ChatController;
+import com.example.chat.controller.MessageController;
+import com.example.chat.model.ChatMessage;
+import com.example.chat.repo.ChatMessageRepo;
+import com.example.chat.repo.UserRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two H2 databases stand in for a primary and its replica; "replication" is an
+ * explicit SCRIPT/RUNSCRIPT copy, so anything not yet copied shows replica lag.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadYourWritesTest.PRIMARY_URL,
+        "chat.datasource.replica.url=" + ReadYourWritesTest.REPLICA_URL,
+        "chat.datasource.replica.read-your-writes-ms=60000",
+        "spring.jpa.show-sql=false"})
+class ReadYourWritesTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MessageController messageController;
+
+    @Autowired
+    private ChatController chatController;
+
+    @Autowired
+    private ChatMessageRepo chatMessageRepo;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
+    @Test
+    void historyReadsGoToReplicaExceptRightAfterASend() throws Exception {
+        TestUsers.create(userRepo, "rw-alice");
+        TestUsers.create(userRepo, "rw-bob");
+        TestUsers.create(userRepo, "rw-carol");
+        replicate();
+
+        // written straight to the primary without going through the send path
+        ChatMessage direct = new ChatMessage();
+        direct.setSender("rw-alice");
+        direct.setReceiver("rw-bob");
+        direct.setContent("not replicated yet");
+        direct.setMessageType(ChatMessage.MessageType.PRIVATE_MESSAGE);
+        direct.setTimestamp(LocalDateTime.now());
+        userDirectory.assignIds(direct);
+        chatMessageRepo.save(direct);
+        assertThat(history("rw-alice", "rw-bob")).isEmpty();
+
+        ChatMessage sent = new ChatMessage();
+        sent.setSender("rw-alice");
+        sent.setReceiver("rw-carol");
+        sent.setContent("just sent");
+        chatController.sendPrivateMessage(sent, null);
+        assertThat(history("rw-alice", "rw-carol")).extracting(ChatMessage::getContent).containsExactly("just sent");
+        assertThat(history("rw-carol", "rw-alice")).extracting(ChatMessage::getContent).containsExactly("just sent");
+
+        replicate();
+        assertThat(history("rw-alice", "rw-bob")).extracting(ChatMessage::getContent)
+                .containsExactly("not replicated yet");
+    }
+
+    private List<ChatMessage> history(String user1, String user2) {
+        return messageController.getPrivateMessages(userRepo.findByUsername(user1).orElseThrow(), null, user2,
+                new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse())).getBody();
+    }
+
+
+    private static void replicate() throws Exception {
+        String snapshot = "target/routing-replica.sql";
+        try (Connection primary = DriverManager.getConnection(PRIMARY_URL, "sa", "password");
+             Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "password");
+             Statement fromPrimary = primary.createStatement();
+             Statement toReplica = replica.createStatement()) {
+            fromPrimary.execute("SCRIPT TO '" + snapshot + "'");
+            toReplica.execute("DROP ALL OBJECTS");
+            toReplica.execute("RUNSCRIPT FROM '" + snapshot + "'");
+        }
+    }
+}
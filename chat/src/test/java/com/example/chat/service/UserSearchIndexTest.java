@@ -0,0 +1,30 @@
+package com.example.chat.service;
+
+import com.example.chat.dto.UserSearchResultDTO;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserSearchIndexTest {
+
+    @Test
+    void ranksOnlineUsersFirst() {
+        UserSearchIndex index = new UserSearchIndex(null, null);
+        index.add("alice", false);
+        index.add("Alicia", false);
+        index.add("albert", true);
+        index.add("bob", true);
+        index.add("alex", false);
+
+        assertThat(index.search("al", 10)).extracting(UserSearchResultDTO::getUsername)
+                .containsExactly("albert", "alex", "alice", "Alicia");
+
+        index.setOnline("alice", true);
+        index.setOnline("albert", false);
+        assertThat(index.search("AL", 10)).extracting(UserSearchResultDTO::getUsername)
+                .containsExactly("alice", "albert", "alex", "Alicia");
+        assertThat(index.search("al", 2)).extracting(UserSearchResultDTO::getIsOnline)
+                .containsExactly(true, false);
+        assertThat(index.search("z", 10)).isEmpty();
+    }
+}
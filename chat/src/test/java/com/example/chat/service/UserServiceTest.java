@@ -0,0 +1,61 @@
+package com.example.chat.service;
+
+import com.example.chat.overload.OverloadController;
+import com.example.chat.repo.UserRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class UserServiceTest {
+
+    private final UserRepo userRepo = mock(UserRepo.class);
+    private final ThreadPoolTaskExecutor presenceExecutor = new ThreadPoolTaskExecutor();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        presenceExecutor.shutdown();
+    }
+
+    @Test
+    void loginWriteRejectedByAFullQueueIsFlushedByTheNextOne() throws Exception {
+        presenceExecutor.setCorePoolSize(1);
+        presenceExecutor.setMaxPoolSize(1);
+        presenceExecutor.setQueueCapacity(1);
+        presenceExecutor.initialize();
+        UserService userService = new UserService(userRepo, mock(UserSearchIndex.class), mock(ReadYourWrites.class),
+                mock(ResourceVersions.class), mock(OverloadController.class), presenceExecutor);
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        presenceExecutor.execute(() -> {
+            blocked.countDown();
+            await(release);
+        });
+        blocked.await();
+        userService.setUserOnlineStatusAsync("queued", true);
+
+        // the queue is full: no exception for the login, and nothing written yet
+        userService.setUserOnlineStatusAsync("rejected", true);
+        verify(userRepo, never()).updateUserOnlineStatus("rejected", true);
+
+        release.countDown();
+        verify(userRepo, timeout(5000)).updateUserOnlineStatus("queued", true);
+        verify(userRepo, timeout(5000)).updateUserOnlineStatus("rejected", true);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.chat.websocket;
+
+import com.example.chat.TestUsers;
+import com.example.chat.ChatApplication;
+import com.example.chat.jwt.JwtService;
+import com.example.chat.model.ChatMessage;
+import com.example.chat.model.User;
+import com.example.chat.repo.UserRepo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two application nodes on localhost sharing an in-process Artemis broker through
+ * the STOMP relay: group and private messages sent on one node reach a client on the other.
+ */
+class BrokerRelayTwoNodeTest {
+
+    private static EmbeddedActiveMQ broker;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() throws Exception {
+        int stompPort = freePort();
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .setJournalDirectory("target/artemis/journal")
+                .setBindingsDirectory("target/artemis/bindings")
+                .setLargeMessagesDirectory("target/artemis/large-messages")
+                .setPagingDirectory("target/artemis/paging")
+                .addAcceptorConfiguration("stomp", "tcp://localhost:" + stompPort
+                        + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/"));
+        broker.start();
+
+        nodeA = startNode("a", stompPort, "create-drop");
+        nodeB = startNode("b", stompPort, "none");
+
+        UserRepo userRepo = nodeA.getBean(UserRepo.class);
+        for (String username : List.of("alice", "bob")) {
+            TestUsers.create(userRepo, username);
+        }
+    }
+
+    private static ConfigurableApplicationContext startNode(String name, int stompPort, String ddlAuto) {
+        return new SpringApplicationBuilder(ChatApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:twonode;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=" + ddlAuto,
+                "--spring.jpa.show-sql=false",
+                "--chat.broker.mode=relay",
+                "--chat.broker.relay.port=" + stompPort,
+                "--jwt.revocation.snapshot-path=target/twonode-" + name + "/revoked-tokens.bin",
+                "--chat.attachments.store-path=target/twonode-" + name + "/attachments",
+                "--logging.level.com.example.chat=INFO",
+                "--logging.level.org.springframework.security=INFO");
+    }
+
+    @AfterAll
+    static void stopNodes() throws Exception {
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (broker != null) {
+            broker.stop();
+        }
+    }
+
+    @Test
+    void groupAndPrivateMessagesCrossNodes() throws Exception {
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(nodeA.getBean(ObjectMapper.class));
+        client.setMessageConverter(converter);
+
+        BlockingQueue<ChatMessage> bobGroup = new LinkedBlockingQueue<>();
+        BlockingQueue<ChatMessage> bobPrivate = new LinkedBlockingQueue<>();
+        StompSession alice = connect(client, nodeA, "alice");
+        StompSession bob = connect(client, nodeB, "bob");
+        bob.subscribe("/topic/group", collectInto(bobGroup));
+        bob.subscribe("/user/queue/private", collectInto(bobPrivate));
+        awaitSubscribed(bob, bobGroup);
+
+        ChatMessage group = new ChatMessage();
+        group.setSender("alice");
+        group.setContent("hello from node a");
+        alice.send("/app/chat.send", group);
+
+        ChatMessage received = bobGroup.poll(10, TimeUnit.SECONDS);
+        assertThat(received).isNotNull();
+        assertThat(received.getContent()).isEqualTo("hello from node a");
+
+        ChatMessage direct = new ChatMessage();
+        direct.setSender("alice");
+        direct.setReceiver("bob");
+        direct.setContent("just for bob");
+        alice.send("/app/chat.private", direct);
+
+        ChatMessage privateReceived = bobPrivate.poll(10, TimeUnit.SECONDS);
+        assertThat(privateReceived).isNotNull();
+        assertThat(privateReceived.getContent()).isEqualTo("just for bob");
+        assertThat(privateReceived.getSender()).isEqualTo("alice");
+
+        alice.disconnect();
+        bob.disconnect();
+        client.stop();
+    }
+
+    // Node B's relay subscription is in place once its own group message comes back through the broker
+    private static void awaitSubscribed(StompSession session, BlockingQueue<ChatMessage> groupQueue)
+            throws InterruptedException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            ChatMessage ping = new ChatMessage();
+            ping.setSender("bob");
+            ping.setContent("ping");
+            session.send("/app/chat.send", ping);
+            if (groupQueue.poll(200, TimeUnit.MILLISECONDS) != null) {
+                groupQueue.clear();
+                return;
+            }
+        }
+        throw new AssertionError("node b never received its own group message");
+    }
+
+    private static StompSession connect(WebSocketStompClient client, ConfigurableApplicationContext node,
+                                        String username) throws Exception {
+        int port = ((WebServerApplicationContext) node).getWebServer().getPort();
+        User user = node.getBean(UserRepo.class).findByUsername(username).orElseThrow();
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + node.getBean(JwtService.class).generateToken(user));
+        return client.connectAsync("ws://localhost:" + port + "/ws/websocket", new WebSocketHttpHeaders(),
+                connectHeaders, new StompSessionHandlerAdapter() {}).get(10, TimeUnit.SECONDS);
+    }
+
+    private static StompFrameHandler collectInto(BlockingQueue<ChatMessage> queue) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return ChatMessage.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                queue.add((ChatMessage) payload);
+            }
+        };
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
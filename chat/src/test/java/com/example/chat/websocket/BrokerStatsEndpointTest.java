@@ -0,0 +1,104 @@
+package com.example.chat.websocket;
+
+import com.example.chat.TestUsers;
+import com.example.chat.dto.BrokerStatsDTO;
+import com.example.chat.jwt.JwtService;
+import com.example.chat.repo.UserRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class BrokerStatsEndpointTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private BrokerStatsEndpoint brokerStatsEndpoint;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private JwtService jwtService;
+
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @Test
+    void onlyHealthAndInfoArePublic() throws Exception {
+        assertThat(get("/actuator/health", null)).isEqualTo(200);
+        assertThat(get("/actuator/info", null)).isEqualTo(200);
+        for (String endpoint : new String[] {"chatbroker", "metrics", "prometheus", "startup"}) {
+            assertThat(get("/actuator/" + endpoint, null)).as(endpoint).isEqualTo(403);
+        }
+
+        String token = jwtService.generateToken(TestUsers.create(userRepo, "actuator-ops"));
+        assertThat(get("/actuator/chatbroker", token)).isEqualTo(200);
+    }
+
+    @Test
+    void reportsSessionsAndSubscribers() throws Exception {
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        client.setMessageConverter(new StringMessageConverter());
+        StompSession session = client.connectAsync("ws://localhost:" + port + "/ws/websocket",
+                new StompSessionHandlerAdapter() {}).get(10, TimeUnit.SECONDS);
+        StompFrameHandler ignore = new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return String.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+            }
+        };
+        session.subscribe("/topic/group", ignore);
+        session.subscribe("/user/stats-alice/queue/private", ignore);
+        session.subscribe("/user/stats-bob/queue/private", ignore);
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            BrokerStatsDTO stats = brokerStatsEndpoint.stats();
+            assertThat(stats.getOpenSessions()).isEqualTo(1);
+            assertThat(stats.getWebSocketSessions()).isEqualTo(1);
+            assertThat(stats.getTopDestinations()).containsEntry("/topic/group", 1)
+                    .containsEntry("/user/*/queue/private", 2)
+                    .doesNotContainKeys("/user/stats-alice/queue/private", "/user/stats-bob/queue/private");
+        });
+
+        session.disconnect();
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            BrokerStatsDTO stats = brokerStatsEndpoint.stats();
+            assertThat(stats.getOpenSessions()).isZero();
+            assertThat(stats.getDestinationCount()).isZero();
+        });
+        client.stop();
+    }
+
+    private int get(String path, String token) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET();
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
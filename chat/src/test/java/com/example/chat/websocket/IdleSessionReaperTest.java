@@ -0,0 +1,155 @@
+package com.example.chat.websocket;
+
+import com.example.chat.TestUsers;
+import com.example.chat.model.ChatMessage;
+import com.example.chat.presence.PresenceRegistry;
+import com.example.chat.repo.UserRepo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Sweeps are driven by the test, so the schedule is left far in the future
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "chat.websocket.heartbeat.server-ms=200",
+        "chat.websocket.heartbeat.client-ms=200",
+        "chat.websocket.reaper.interval-ms=600000",
+        "chat.websocket.reaper.idle-timeout-ms=1000"})
+class IdleSessionReaperTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private IdleSessionReaper reaper;
+
+    @Autowired
+    private WebSocketSessionRegistry sessionRegistry;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void silentSessionIsReapedWhileHeartbeatingSessionSurvives() throws Exception {
+        TestUsers.create(userRepo, "reap-silent");
+
+        // No task scheduler, so this client negotiates no heartbeats and goes quiet after joining
+        WebSocketStompClient silentClient = client(null);
+        StompSession silent = connect(silentClient);
+        ChatMessage join = new ChatMessage();
+        join.setSender("reap-silent");
+        silent.send("/app/chat.adduser", join);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> presenceRegistry.isOnline("reap-silent"));
+
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        WebSocketStompClient beatingClient = client(scheduler);
+        beatingClient.setDefaultHeartbeat(new long[]{200, 200});
+        StompSession beating = connect(beatingClient);
+        assertThat(sessionRegistry.size()).isEqualTo(2);
+
+        Thread.sleep(1500);
+        assertThat(reaper.sweep()).isEqualTo(1);
+
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+            assertThat(presenceRegistry.isOnline("reap-silent")).isFalse();
+            assertThat(sessionRegistry.size()).isEqualTo(1);
+        });
+        assertThat(beating.isConnected()).isTrue();
+        assertThat(meterRegistry.get("chat.websocket.reaped").tag("reason", "idle").counter().count())
+                .isEqualTo(1);
+
+        beating.disconnect();
+        beatingClient.stop();
+        silentClient.stop();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void closeStuckOnADeadConnectionHoldsUpNeitherTheSweepNorOtherCloses() throws Exception {
+        WebSocketSessionRegistry registry = new WebSocketSessionRegistry();
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        IdleSessionReaper stuckReaper = new IdleSessionReaper(registry, meters, 600_000, 1, 30_000, 10, 200, 2);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        WebSocketSession stuck = session("stuck");
+        doAnswer(invocation -> {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        }).when(stuck).close(any(CloseStatus.class));
+        WebSocketSession quick = session("quick");
+        registry.register(new ConcurrentWebSocketSessionDecorator(stuck, 1000, 1024));
+        registry.register(new ConcurrentWebSocketSessionDecorator(quick, 1000, 1024));
+        Thread.sleep(10);
+
+        try {
+            long start = System.nanoTime();
+            assertThat(stuckReaper.sweep()).isEqualTo(2);
+            assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(1));
+            verify(quick, timeout(5000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+            assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(meters.get("chat.websocket.reaped.close.timeouts").counter().count()).isEqualTo(1);
+        } finally {
+            stuckReaper.stop();
+        }
+    }
+
+    private static WebSocketSession session(String id) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        return session;
+    }
+
+    private WebSocketStompClient client(ThreadPoolTaskScheduler scheduler) {
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        client.setMessageConverter(converter);
+        if (scheduler != null) {
+            client.setTaskScheduler(scheduler);
+        }
+        return client;
+    }
+
+    private StompSession connect(WebSocketStompClient client) throws Exception {
+        return client.connectAsync("ws://localhost:" + port + "/ws/websocket", new StompSessionHandlerAdapter() {})
+                .get(10, TimeUnit.SECONDS);
+    }
+}
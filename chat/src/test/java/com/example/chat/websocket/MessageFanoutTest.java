@@ -0,0 +1,38 @@
+package com.example.chat.websocket;
+
+import com.example.chat.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageFanoutTest {
+
+    @Test
+    void encodesOnceForAllDestinations() {
+        List<Message<?>> sent = new ArrayList<>();
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> sent.add(message));
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+
+        ChatMessage chatMessage = new ChatMessage();
+        chatMessage.setSender("alice");
+        chatMessage.setReceiver("bob");
+        chatMessage.setContent("hello");
+
+        new MessageFanout(template).send(chatMessage, "/user/bob/queue/private", "/user/alice/queue/private");
+
+        assertThat(sent).hasSize(2);
+        assertThat(sent.get(0).getPayload()).isSameAs(sent.get(1).getPayload());
+        assertThat(new String((byte[]) sent.get(0).getPayload())).contains("\"content\":\"hello\"");
+        assertThat(SimpMessageHeaderAccessor.getDestination(sent.get(0).getHeaders())).isEqualTo("/user/bob/queue/private");
+        assertThat(SimpMessageHeaderAccessor.getDestination(sent.get(1).getHeaders())).isEqualTo("/user/alice/queue/private");
+        assertThat(SimpMessageHeaderAccessor.wrap(sent.get(1)).getContentType()).isEqualTo(MimeTypeUtils.APPLICATION_JSON);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.chat.websocket;
+
+import com.example.chat.TestUsers;
+import com.example.chat.jwt.JwtService;
+import com.example.chat.model.ChatMessage;
+import com.example.chat.repo.ChatMessageRepo;
+import com.example.chat.repo.UserRepo;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A wide window so both sends of a pair always land in it
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "chat.websocket.coalesce.enabled=true",
+        "chat.websocket.coalesce.window-ms=500"})
+class OutboundCoalescerTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private ChatMessageRepo chatMessageRepo;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void batchAndSingleSendsAreCoalescedIntoOneFrame() throws Exception {
+        String token = jwtService.generateToken(TestUsers.create(userRepo, "coalesce-sender"));
+        long storedBefore = chatMessageRepo.count();
+
+        WebSocketStompClient client = newClient();
+        StompSession session = connect(client, token);
+        BlockingQueue<JsonNode> frames = subscribe(session);
+
+        session.send("/app/chat.sendBatch", List.of(message("b1"), message("b2"), message("b3")));
+        session.send("/app/chat.send", message("s1"));
+
+        JsonNode frame = frames.poll(10, TimeUnit.SECONDS);
+        assertThat(frame).isNotNull();
+        assertThat(frame.isArray()).isTrue();
+        assertThat(frame.findValuesAsText("content")).containsExactlyInAnyOrder("b1", "b2", "b3", "s1");
+        assertThat(frame.findValuesAsText("messageType")).containsOnly("CHAT");
+        assertThat(frames.poll(1, TimeUnit.SECONDS)).isNull();
+        assertThat(chatMessageRepo.count()).isEqualTo(storedBefore + 4);
+        assertThat(meterRegistry.get("chat.websocket.coalesced.frames").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("chat.websocket.coalesced.messages").counter().count()).isEqualTo(2);
+
+        session.disconnect();
+        client.stop();
+    }
+
+    @Test
+    void batchHoldingAnotherSendersMessageIsDropped() throws Exception {
+        String token = jwtService.generateToken(TestUsers.create(userRepo, "coalesce-mallory"));
+        long storedBefore = chatMessageRepo.count();
+
+        WebSocketStompClient client = newClient();
+        StompSession session = connect(client, token);
+        BlockingQueue<JsonNode> frames = subscribe(session);
+
+        session.send("/app/chat.sendBatch", List.of(message("coalesce-mallory", "mine"),
+                message("coalesce-sender", "spoofed")));
+        session.send("/app/chat.sendBatch", List.of(message("coalesce-mallory", "all mine")));
+
+        JsonNode frame = frames.poll(10, TimeUnit.SECONDS);
+        assertThat(frame).isNotNull();
+        assertThat(frame.findValuesAsText("content")).containsExactly("all mine");
+        assertThat(frames.poll(1, TimeUnit.SECONDS)).isNull();
+        assertThat(chatMessageRepo.count()).isEqualTo(storedBefore + 1);
+
+        session.disconnect();
+        client.stop();
+    }
+
+    private WebSocketStompClient newClient() {
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        client.setMessageConverter(converter);
+        return client;
+    }
+
+    private StompSession connect(WebSocketStompClient client, String token) throws Exception {
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + token);
+        return client.connectAsync("ws://localhost:" + port + "/ws/websocket", new WebSocketHttpHeaders(),
+                connectHeaders, new StompSessionHandlerAdapter() {}).get(10, TimeUnit.SECONDS);
+    }
+
+    private BlockingQueue<JsonNode> subscribe(StompSession session) throws InterruptedException {
+        BlockingQueue<JsonNode> frames = new LinkedBlockingQueue<>();
+        session.subscribe("/topic/group", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return JsonNode.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                frames.add((JsonNode) payload);
+            }
+        });
+        // SUBSCRIBE is not acknowledged, so give it a moment to reach the broker
+        Thread.sleep(200);
+        return frames;
+    }
+
+    private ChatMessage message(String content) {
+        return message("coalesce-sender", content);
+    }
+
+    private ChatMessage message(String sender, String content) {
+        ChatMessage message = new ChatMessage();
+        message.setSender(sender);
+        message.setContent(content);
+        return message;
+    }
+}
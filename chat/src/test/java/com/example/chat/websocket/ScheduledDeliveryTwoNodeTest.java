@@ -0,0 +1,103 @@
+package com.example.chat.websocket;
+
+import com.example.chat.ChatApplication;
+import com.example.chat.TestUsers;
+import com.example.chat.model.ChatMessage;
+import com.example.chat.model.MessageBody;
+import com.example.chat.model.ScheduledMessage;
+import com.example.chat.repo.ChatMessageRepo;
+import com.example.chat.repo.ScheduledMessageRepo;
+import com.example.chat.repo.UserRepo;
+import com.example.chat.scheduler.MessageScheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Two application nodes on one database, both holding the same scheduled rows
+ * in their timing wheels, as after a restart of either: each row is delivered once.
+ */
+class ScheduledDeliveryTwoNodeTest {
+
+    private static final int ROWS = 50;
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = startNode("a", "create-drop");
+        nodeB = startNode("b", "none");
+    }
+
+    private static ConfigurableApplicationContext startNode(String name, String ddlAuto) {
+        return new SpringApplicationBuilder(ChatApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:scheduledtwonode;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=" + ddlAuto,
+                "--spring.jpa.show-sql=false",
+                "--chat.scheduler.tick-ms=20",
+                "--jwt.revocation.snapshot-path=target/scheduled-twonode-" + name + "/revoked-tokens.bin",
+                "--chat.attachments.store-path=target/scheduled-twonode-" + name + "/attachments",
+                "--logging.level.com.example.chat=INFO",
+                "--logging.level.org.springframework.security=INFO");
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+    }
+
+    @Test
+    void eachScheduledRowIsDeliveredByOneNode() {
+        Long senderId = TestUsers.create(nodeA.getBean(UserRepo.class), "twonode-sched").getId();
+        ScheduledMessageRepo scheduledMessageRepo = nodeA.getBean(ScheduledMessageRepo.class);
+        ChatMessageRepo chatMessageRepo = nodeA.getBean(ChatMessageRepo.class);
+        long before = chatMessageRepo.count();
+
+        // Written directly, as if left by a previous run, so that both nodes recover all of them
+        List<ScheduledMessage> rows = new ArrayList<>();
+        LocalDateTime dueAt = LocalDateTime.now().plusNanos(500_000_000);
+        for (int i = 0; i < ROWS; i++) {
+            ScheduledMessage row = new ScheduledMessage();
+            row.setKind(ScheduledMessage.Kind.SEND);
+            row.setDueAt(dueAt);
+            row.setSenderId(senderId);
+            row.setMessageType(ChatMessage.MessageType.CHAT);
+            row.setBody(MessageBody.of("scheduled " + i));
+            rows.add(row);
+        }
+        long maxId = scheduledMessageRepo.saveAll(rows).getLast().getId();
+        for (ConfigurableApplicationContext node : List.of(nodeA, nodeB)) {
+            MessageScheduler scheduler = node.getBean(MessageScheduler.class);
+            ReflectionTestUtils.setField(scheduler, "recoverUpTo", maxId);
+            scheduler.recover();
+        }
+
+        // A row is deleted only after its claiming node delivered it, so nothing is still in flight once all are gone
+        await().atMost(10, TimeUnit.SECONDS).until(() -> scheduledMessageRepo.count() == 0);
+        assertThat(chatMessageRepo.count()).isEqualTo(before + ROWS);
+        assertThat(sent(nodeA) + sent(nodeB)).isEqualTo(ROWS);
+    }
+
+    private static double sent(ConfigurableApplicationContext node) {
+        return node.getBean(MeterRegistry.class).get("chat.scheduler.handled").tag("outcome", "sent").counter().count();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.chat.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SubscriptionTrackerTest {
+
+    private static final String DESTINATION = "/topic/group";
+
+    private final SubscriptionTracker tracker = new SubscriptionTracker();
+
+    @Test
+    void aSubscriberIsNeverLostToAConcurrentRemoval() throws Exception {
+        AtomicInteger missed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int w = 0; w < 8; w++) {
+                String sessionId = "churn-" + w;
+                workers.add(pool.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        String subscriptionId = String.valueOf(i);
+                        tracker.onSubscribe(new SessionSubscribeEvent(this,
+                                frame(StompCommand.SUBSCRIBE, sessionId, subscriptionId)));
+                        // the count keeps dropping to 0 under the others, but never while this one is subscribed
+                        if (tracker.getSubscriberCount(DESTINATION) == 0) {
+                            missed.incrementAndGet();
+                        }
+                        tracker.onUnsubscribe(new SessionUnsubscribeEvent(this,
+                                frame(StompCommand.UNSUBSCRIBE, sessionId, subscriptionId)));
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(missed).hasValue(0);
+        assertThat(tracker.getDestinationCount()).isZero();
+    }
+
+    private static Message<byte[]> frame(StompCommand command, String sessionId, String subscriptionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        if (command == StompCommand.SUBSCRIBE) {
+            accessor.setDestination(DESTINATION);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
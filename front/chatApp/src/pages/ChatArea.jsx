@@ -269,79 +269,96 @@ const ChatArea = () => {
     const client = new Client({
       // reconnect automatically
       reconnectDelay: 5000,
+      // match chat.websocket.heartbeat; a silent client is disconnected by the server
+      heartbeatIncoming: 10000,
+      heartbeatOutgoing: 10000,
       webSocketFactory: () => new SockJS("http://localhost:8080/ws"),
+      // the server takes the user from the token, /user/queue/private needs it
       connectHeaders: {
         "client-id": username,
         "session-id": Date.now().toString(),
-        username,
+        Authorization: `Bearer ${currentUser?.token}`,
       },
       debug: () => {}, // silence logs; set to console.log for debugging
     });
 
+    // A frame holds one message, or an array of them from /app/chat.sendBatch or outbound coalescing
+    const toMessages = (body) => {
+      const parsed = JSON.parse(body);
+      return Array.isArray(parsed) ? parsed : [parsed];
+    };
+
     client.onConnect = async () => {
       console.log("Connected to WebSocket");
       // Subscribe to group channel
       client.subscribe("/topic/group", (messageFrame) => {
-        const chatMessage = JSON.parse(messageFrame.body);
+        toMessages(messageFrame.body).forEach((chatMessage) => {
+          setOnlineUsers((prev) => {
+            const next = new Set(prev);
+            if (chatMessage.type === "JOIN") next.add(chatMessage.sender);
+            else if (chatMessage.type === "LEAVE")
+              next.delete(chatMessage.sender);
+            return next;
+          });
 
-        setOnlineUsers((prev) => {
-          const next = new Set(prev);
-          if (chatMessage.type === "JOIN") next.add(chatMessage.sender);
-          else if (chatMessage.type === "LEAVE")
-            next.delete(chatMessage.sender);
-          return next;
-        });
+          // Self-destructing message expired on the server
+          if (chatMessage.messageType === "DELETE") {
+            setMessages((prev) => prev.filter((m) => m.id !== chatMessage.id));
+            return;
+          }
 
-        if (chatMessage.type === "TYPING") {
-          setIsTyping(chatMessage.sender);
-          clearTimeout(typingTimeoutRef.current);
-          typingTimeoutRef.current = setTimeout(() => setIsTyping(""), 3000);
-          return;
-        }
-
-        if (
-          chatMessage.type === "CHAT" ||
-          chatMessage.type === "JOIN" ||
-          chatMessage.type === "LEAVE"
-        ) {
-          setMessages((prev) => [
-            ...prev,
-            {
-              ...chatMessage,
-              timestamp: chatMessage.timestamp || new Date().toISOString(),
-              id: chatMessage.id || `${Date.now()}-${Math.random()}`,
-            },
-          ]);
-        }
+          if (chatMessage.type === "TYPING") {
+            setIsTyping(chatMessage.sender);
+            clearTimeout(typingTimeoutRef.current);
+            typingTimeoutRef.current = setTimeout(() => setIsTyping(""), 3000);
+            return;
+          }
+
+          if (
+            chatMessage.type === "CHAT" ||
+            chatMessage.type === "JOIN" ||
+            chatMessage.type === "LEAVE"
+          ) {
+            setMessages((prev) => [
+              ...prev,
+              {
+                ...chatMessage,
+                timestamp: chatMessage.timestamp || new Date().toISOString(),
+                id: chatMessage.id || `${Date.now()}-${Math.random()}`,
+              },
+            ]);
+          }
+        });
       });
 
-      // Subscribe to private queue
-      client.subscribe(`/user/${username}/queue/private`, (messageFrame) => {
-        const privateMessage = JSON.parse(messageFrame.body);
-        const otherUser =
-          privateMessage.sender === username
-            ? privateMessage.recipient || privateMessage.recepient
-            : privateMessage.sender;
-
-        // Invoke active handler if a private window for that user is open
-        const handler = privateMessageHandlers.current.get(otherUser);
-        if (handler) {
-          try {
-            handler(privateMessage);
-          } catch (err) {
-            console.error("Error in private message handler:", err);
+      // Subscribe to private queue; the server resolves /user/queue to this session's user on any node
+      client.subscribe("/user/queue/private", (messageFrame) => {
+        toMessages(messageFrame.body).forEach((privateMessage) => {
+          const otherUser =
+            privateMessage.sender === username
+              ? privateMessage.recipient || privateMessage.recepient
+              : privateMessage.sender;
+
+          // Invoke active handler if a private window for that user is open
+          const handler = privateMessageHandlers.current.get(otherUser);
+          if (handler) {
+            try {
+              handler(privateMessage);
+            } catch (err) {
+              console.error("Error in private message handler:", err);
+            }
+          } else if (
+            (privateMessage.recipient || privateMessage.recepient) === username
+          ) {
+            // Increase unread count if the chat window is not open
+            setUnreadMessages((prev) => {
+              const next = new Map(prev);
+              const currentCount = next.get(otherUser) || 0;
+              next.set(otherUser, currentCount + 1);
+              return next;
+            });
           }
-        } else if (
-          (privateMessage.recipient || privateMessage.recepient) === username
-        ) {
-          // Increase unread count if the chat window is not open
-          setUnreadMessages((prev) => {
-            const next = new Map(prev);
-            const currentCount = next.get(otherUser) || 0;
-            next.set(otherUser, currentCount + 1);
-            return next;
-          });
-        }
+        });
       });
 
       // Announce join
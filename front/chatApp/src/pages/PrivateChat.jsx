@@ -1,4 +1,5 @@
 import { useEffect, useRef, useState, useCallback } from "react";
+import { authService } from "../service/authServices";
 import "../styles/PrivateChat.css";
 
 const PrivateChat = ({
@@ -34,6 +35,10 @@ const PrivateChat = ({
   };
 
   const handleIncomingPrivateMessage = useCallback((msg) => {
+    if (msg.messageType === "DELETE") {
+      setMessages((prev) => prev.filter((m) => m.id !== msg.id));
+      return;
+    }
     const messageId = msg.id || createMessageId(msg);
     if (!messageIdRef.current.has(messageId)) {
       messageIdRef.current.add(messageId);
@@ -65,12 +70,12 @@ const PrivateChat = ({
 
     const loadMessageHistory = async () => {
       try {
-        const response = await fetch(
-          `http://localhost:8080/api/messages/private?user1=${currentUser}&user2=${recepientUser}`
+        const { messages: history } = await authService.fetchPrivateMessages(
+          currentUser,
+          recepientUser
         );
 
-        if (response.ok && isMounted) {
-          const history = await response.json();
+        if (isMounted) {
           const processedHistory = history.map((msg) => {
             const messageId = msg.id || createMessageId(msg);
             return { ...msg, id: messageId };